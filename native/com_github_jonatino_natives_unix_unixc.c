@@ -1,7 +1,13 @@
 #define _GNU_SOURCE
+#include <errno.h>
+#include <limits.h>
 #include <sys/uio.h>
 #include "com_github_jonatino_natives_unix_unixc.h"
 
+#ifndef IOV_MAX
+#define IOV_MAX 1024
+#endif
+
 // gcc -I/usr/lib/jvm/java-8-openjdk-amd64/include/ -I/usr/lib/jvm/java-8-openjdk-amd64/include/linux -lc -shared -fPIC -o libnative_mem.so com_github_jonatino_natives_unix_unixc.c
 
 JNIEXPORT jlong JNICALL Java_com_github_jonatino_natives_unix_unixc_mem_1read__IJJI
@@ -33,6 +39,8 @@ JNIEXPORT jlong JNICALL Java_com_github_jonatino_natives_unix_unixc_mem_1write__
 JNIEXPORT jlong JNICALL Java_com_github_jonatino_natives_unix_unixc_mem_1read__I_3J_3J_3I
   (JNIEnv *env, jclass class, jint pid, jlongArray localaddrarr, jlongArray remoteaddrarr, jintArray lengtharr) {
   	jsize count = (*env)->GetArrayLength(env, localaddrarr);
+  	if (count > IOV_MAX)
+  		return -EINVAL;
   	struct iovec local[count];
   	struct iovec remote[count];
 
@@ -47,9 +55,9 @@ JNIEXPORT jlong JNICALL Java_com_github_jonatino_natives_unix_unixc_mem_1read__I
         remote[i].iov_len = length[i];
 	}
 
-	(*env)->ReleaseLongArrayElements(env, localaddrarr, localaddr, 0);
-	(*env)->ReleaseLongArrayElements(env, remoteaddrarr, remoteaddr, 0);
-	(*env)->ReleaseIntArrayElements(env, lengtharr, length, 0);
+	(*env)->ReleaseLongArrayElements(env, localaddrarr, localaddr, JNI_ABORT);
+	(*env)->ReleaseLongArrayElements(env, remoteaddrarr, remoteaddr, JNI_ABORT);
+	(*env)->ReleaseIntArrayElements(env, lengtharr, length, JNI_ABORT);
 
 	return process_vm_readv(pid, local, count, remote, count, 0);
 }
@@ -57,6 +65,8 @@ JNIEXPORT jlong JNICALL Java_com_github_jonatino_natives_unix_unixc_mem_1read__I
 JNIEXPORT jlong JNICALL Java_com_github_jonatino_natives_unix_unixc_mem_1write__I_3J_3J_3I
   (JNIEnv *env, jclass class, jint pid, jlongArray localaddrarr, jlongArray remoteaddrarr, jintArray lengtharr) {
   	jsize count = (*env)->GetArrayLength(env, localaddrarr);
+  	if (count > IOV_MAX)
+  		return -EINVAL;
   	struct iovec local[count];
   	struct iovec remote[count];
 
@@ -71,9 +81,97 @@ JNIEXPORT jlong JNICALL Java_com_github_jonatino_natives_unix_unixc_mem_1write__
         remote[i].iov_len = length[i];
 	}
 
-	(*env)->ReleaseLongArrayElements(env, localaddrarr, localaddr, 0);
-	(*env)->ReleaseLongArrayElements(env, remoteaddrarr, remoteaddr, 0);
-	(*env)->ReleaseIntArrayElements(env, lengtharr, length, 0);
+	(*env)->ReleaseLongArrayElements(env, localaddrarr, localaddr, JNI_ABORT);
+	(*env)->ReleaseLongArrayElements(env, remoteaddrarr, remoteaddr, JNI_ABORT);
+	(*env)->ReleaseIntArrayElements(env, lengtharr, length, JNI_ABORT);
 
 	return process_vm_writev(pid, local, count, remote, count, 0);
-}
\ No newline at end of file
+}
+
+/*
+ * A batch descriptor, laid out by VectoredBatch: where to copy from and to, how many bytes, and how many of them
+ * were transferred, which is filled in here.
+ */
+struct descriptor {
+	jlong local;
+	jlong remote;
+	jlong length;
+	jlong transferred;
+};
+
+/*
+ * Runs `count` descriptors through process_vm_readv/writev, IOV_MAX at a time. The calls stop at the first entry
+ * they can't transfer; that entry is recorded as 0 bytes and the rest carry on in the next call. Returns the number
+ * of entries transferred in full, or -errno when the target can't be accessed at all.
+ */
+static jlong transfer_table(jint pid, struct descriptor *table, jint count, int write) {
+	struct iovec local[IOV_MAX];
+	struct iovec remote[IOV_MAX];
+	jlong complete = 0;
+
+	for (jint i = 0; i < count; ) {
+		int n = count - i < IOV_MAX ? count - i : IOV_MAX;
+		for (int k = 0; k < n; k++) {
+			local[k].iov_base = (void*) table[i + k].local;
+			local[k].iov_len = table[i + k].length;
+			remote[k].iov_base = (void*) table[i + k].remote;
+			remote[k].iov_len = table[i + k].length;
+		}
+
+		ssize_t done = write ? process_vm_writev(pid, local, n, remote, n, 0) : process_vm_readv(pid, local, n, remote, n, 0);
+		if (done < 0) {
+			if (errno != EFAULT) {
+				int error = errno;
+				for (; i < count; i++)
+					table[i].transferred = 0;
+				return -error;
+			}
+			// the first entry is unreadable
+			table[i++].transferred = 0;
+			continue;
+		}
+
+		int k = 0;
+		for (; k < n && done >= table[i + k].length; k++) {
+			table[i + k].transferred = table[i + k].length;
+			done -= table[i + k].length;
+			complete++;
+		}
+		if (k < n) {
+			// never splits an entry in practice, but record whatever got through
+			table[i + k].transferred = done;
+			k++;
+		}
+		i += k;
+	}
+	return complete;
+}
+
+JNIEXPORT jlong JNICALL Java_com_github_jonatino_natives_unix_unixc_mem_1readv
+  (JNIEnv *env, jclass class, jint pid, jlong table, jint count) {
+	return transfer_table(pid, (struct descriptor*) table, count, 0);
+}
+
+JNIEXPORT jlong JNICALL Java_com_github_jonatino_natives_unix_unixc_mem_1writev
+  (JNIEnv *env, jclass class, jint pid, jlong table, jint count) {
+	return transfer_table(pid, (struct descriptor*) table, count, 1);
+}
+
+JNIEXPORT jlong JNICALL Java_com_github_jonatino_natives_unix_unixc_mem_1read_1array
+  (JNIEnv *env, jclass class, jint pid, jlong remoteaddr, jobject array, jlong offset, jint length) {
+	struct iovec local[1];
+	struct iovec remote[1];
+
+	// no JNI calls and nothing that blocks for long until the array is released, the GC may be held off meanwhile
+	char *elements = (*env)->GetPrimitiveArrayCritical(env, array, NULL);
+	if (elements == NULL)
+		return -1;
+	local[0].iov_base = elements + offset;
+	local[0].iov_len = length;
+	remote[0].iov_base = (void*) remoteaddr;
+	remote[0].iov_len = length;
+
+	ssize_t read = process_vm_readv(pid, local, 1, remote, 1, 0);
+	(*env)->ReleasePrimitiveArrayCritical(env, array, elements, 0);
+	return read;
+}
@@ -39,6 +39,30 @@ JNIEXPORT jlong JNICALL Java_com_github_jonatino_natives_unix_unixc_mem_1read__I
 JNIEXPORT jlong JNICALL Java_com_github_jonatino_natives_unix_unixc_mem_1write__I_3J_3J_3I
   (JNIEnv *, jclass, jint, jlongArray, jlongArray, jintArray);
 
+/*
+ * Class:     com_github_jonatino_natives_unix_unixc
+ * Method:    mem_readv
+ * Signature: (IJI)J
+ */
+JNIEXPORT jlong JNICALL Java_com_github_jonatino_natives_unix_unixc_mem_1readv
+  (JNIEnv *, jclass, jint, jlong, jint);
+
+/*
+ * Class:     com_github_jonatino_natives_unix_unixc
+ * Method:    mem_writev
+ * Signature: (IJI)J
+ */
+JNIEXPORT jlong JNICALL Java_com_github_jonatino_natives_unix_unixc_mem_1writev
+  (JNIEnv *, jclass, jint, jlong, jint);
+
+/*
+ * Class:     com_github_jonatino_natives_unix_unixc
+ * Method:    mem_read_array
+ * Signature: (IJLjava/lang/Object;JI)J
+ */
+JNIEXPORT jlong JNICALL Java_com_github_jonatino_natives_unix_unixc_mem_1read_1array
+  (JNIEnv *, jclass, jint, jlong, jobject, jlong, jint);
+
 #ifdef __cplusplus
 }
 #endif
@@ -0,0 +1,90 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.benchmark;
+
+import com.github.jonatino.process.DataSource;
+import com.github.jonatino.process.impl.UnsafeProcess;
+import com.github.jonatino.process.impl.unix.UnixProcess;
+import com.github.jonatino.process.impl.unix.UnixProcessC;
+import com.github.jonatino.process.impl.unix.UnixProcessMem;
+
+import java.io.IOException;
+
+/**
+ * The read/write implementations under comparison.
+ */
+public enum Backend {
+
+	/** Unsafe copies within this process. */
+	UNSAFE {
+		@Override
+		Target target() {
+			return Target.local();
+		}
+
+		@Override
+		DataSource open(Target target) {
+			return new UnsafeProcess(target.pid);
+		}
+	},
+	/** JNA process_vm_readv with iovec Structures. */
+	JNA {
+		@Override
+		DataSource open(Target target) {
+			return new UnixProcess(target.pid);
+		}
+	},
+	/** process_vm_readv through the JNI library. */
+	JNI {
+		@Override
+		DataSource open(Target target) {
+			return new UnixProcessC(target.pid);
+		}
+	},
+	/** process_vm_readv through java.lang.foreign downcalls; needs JDK 22 and the java22 classes on the classpath. */
+	FFM {
+		@Override
+		DataSource open(Target target) {
+			try {
+				return (DataSource) Class.forName("com.github.jonatino.process.impl.unix.ForeignProcess").getConstructor(int.class).newInstance(target.pid);
+			} catch (ReflectiveOperationException | LinkageError e) {
+				throw new IllegalStateException("The java.lang.foreign backend needs JDK 22", e);
+			}
+		}
+	},
+	/** Positional reads on /proc/pid/mem. */
+	PROC_MEM {
+		@Override
+		DataSource open(Target target) {
+			return new UnixProcessMem(target.pid);
+		}
+	},
+	/** One PTRACE_PEEKTEXT per word; single-threaded only, as ptrace requests must come from the attaching thread. */
+	PTRACE {
+		@Override
+		DataSource open(Target target) {
+			return new PtraceSource(target.pid);
+		}
+	};
+
+	Target target() throws IOException {
+		return Target.spawn();
+	}
+
+	abstract DataSource open(Target target);
+
+}
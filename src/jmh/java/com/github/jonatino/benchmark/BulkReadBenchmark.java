@@ -0,0 +1,79 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.benchmark;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.sun.jna.Pointer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of 4 KB up to 64 MB into a preallocated buffer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkReadBenchmark {
+
+	@State(Scope.Thread)
+	public static class Buffer {
+
+		@Param({"4096", "65536", "1048576", "16777216", "67108864"})
+		public int size;
+
+		MemoryBuffer memory;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			memory = new MemoryBuffer(size);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			memory.free();
+		}
+
+	}
+
+	@Benchmark
+	public void read(TargetSource target, Buffer buffer) {
+		target.source.read(target.base + Layout.BULK, buffer.size, Pointer.nativeValue(buffer.memory));
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void readThreads(TargetSource target, Buffer buffer) {
+		target.source.read(target.base + Layout.BULK, buffer.size, Pointer.nativeValue(buffer.memory));
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.benchmark;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.sun.jna.Pointer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The memory every benchmark reads: a few typed values and strings at fixed offsets, a block of struct-like
+ * records for batch reads, and a large patterned block for bulk reads.
+ */
+final class Layout {
+
+	static final int INT = 0;
+	static final int LONG = 8;
+	static final int FLOAT = 16;
+	static final int DOUBLE = 24;
+	static final int POINTER = 32;
+	static final int WRITE = 40;
+	static final int STRING = 64;
+	static final int WSTRING = 128;
+
+	static final int INT_VALUE = 0x12345678;
+	static final long LONG_VALUE = 0x1122334455667788L;
+	static final float FLOAT_VALUE = 1337.25f;
+	static final double DOUBLE_VALUE = Math.PI;
+	static final String STRING_VALUE = "benchmark_target_entity";
+
+	static final int RECORDS = 4096;
+	static final int RECORD_SIZE = 64;
+	static final int RECORD_COUNT = 256;
+
+	static final int BULK = 1 << 16;
+	static final int BULK_SIZE = 64 << 20;
+
+	static final int SIZE = BULK + BULK_SIZE;
+
+	private Layout() {
+		throw new UnsupportedOperationException();
+	}
+
+	static MemoryBuffer create() {
+		MemoryBuffer memory = new MemoryBuffer(SIZE);
+		memory.clear(BULK);
+		long base = Pointer.nativeValue(memory);
+		memory.setInt(INT, INT_VALUE);
+		memory.setLong(LONG, LONG_VALUE);
+		memory.setFloat(FLOAT, FLOAT_VALUE);
+		memory.setDouble(DOUBLE, DOUBLE_VALUE);
+		memory.setLong(POINTER, base + STRING);
+		byte[] string = STRING_VALUE.getBytes(StandardCharsets.US_ASCII);
+		memory.write(STRING, string, 0, string.length);
+		byte[] wide = STRING_VALUE.getBytes(StandardCharsets.UTF_16LE);
+		memory.write(WSTRING, wide, 0, wide.length);
+		for (int i = 0; i < RECORD_COUNT; i++) {
+			memory.setInt(RECORDS + i * RECORD_SIZE, i);
+		}
+		for (long i = 0; i < BULK_SIZE; i += 8) {
+			memory.setLong(BULK + i, i * 0x9E3779B97F4A7C15L);
+		}
+		return memory;
+	}
+
+}
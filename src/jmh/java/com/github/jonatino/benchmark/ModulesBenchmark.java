@@ -0,0 +1,85 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.benchmark;
+
+import com.github.jonatino.process.Process;
+import com.github.jonatino.process.RegionTable;
+import com.github.jonatino.process.impl.unix.ProcMaps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Module discovery and /proc/pid/maps parsing. The target is a JVM, so it has a realistic number of mappings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModulesBenchmark {
+
+	@Param({"UNSAFE", "JNA", "JNI", "FFM", "PROC_MEM"})
+	public Backend backend;
+
+	private Target target;
+	private Process process;
+	private ProcMaps maps;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		target = backend.target();
+		process = (Process) backend.open(target);
+		maps = new ProcMaps(target.pid);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		target.close();
+	}
+
+	@Benchmark
+	public Process initModules() {
+		process.initModules();
+		return process;
+	}
+
+	@Benchmark
+	public RegionTable regions() {
+		return process.regions();
+	}
+
+	@Benchmark
+	public boolean refreshMaps() {
+		return maps.refresh();
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.benchmark;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.natives.unix.ptrace;
+import com.github.jonatino.process.DataSource;
+import com.github.jonatino.process.Process;
+import com.sun.jna.Pointer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Puts {@link ptrace#read(int, long, Pointer, int)} and friends behind {@link DataSource} so it can run the same
+ * benchmarks. Attaches on creation and waits for the target to stop. Transfers whole words, so sizes should be
+ * multiples of 8.
+ */
+final class PtraceSource implements DataSource {
+
+	private final int pid;
+	private final Pointer target = new Pointer(0);
+
+	PtraceSource(int pid) {
+		this.pid = pid;
+		ptrace.attach(pid);
+		awaitStop();
+	}
+
+	@Override
+	public MemoryBuffer read(long address, int size) {
+		return ptrace.read(pid, address, size);
+	}
+
+	@Override
+	public void read(long address, int size, long target) {
+		Pointer.nativeValue(this.target, target);
+		ptrace.read(pid, address, this.target, size);
+	}
+
+	/**
+	 * @return null, there is no {@link Process} behind this source
+	 */
+	@Override
+	public Process write(Pointer address, MemoryBuffer buffer) {
+		ptrace.write(pid, Pointer.nativeValue(address), buffer);
+		return null;
+	}
+
+	@Override
+	public boolean canRead(Pointer address, int size) {
+		return true;
+	}
+
+	private void awaitStop() {
+		try {
+			for (int i = 0; i < 1000; i++) {
+				String stat = new String(Files.readAllBytes(Paths.get("/proc/" + pid + "/stat")));
+				char state = stat.charAt(stat.lastIndexOf(')') + 2);
+				if (state == 't' || state == 'T')
+					return;
+				Thread.sleep(1);
+			}
+		} catch (IOException | InterruptedException e) {
+			throw new IllegalStateException("Failed to wait for " + pid + " to stop", e);
+		}
+		throw new IllegalStateException("Process " + pid + " did not stop after PTRACE_ATTACH");
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.benchmark;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.process.ReadBatch;
+import com.github.jonatino.process.WriteBatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typed reads, batch reads and writes, on one thread and on four.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark {
+
+	@State(Scope.Thread)
+	public static class Batches {
+
+		ReadBatch read;
+		WriteBatch write;
+		MemoryBuffer values;
+
+		@Setup(Level.Trial)
+		public void setup(TargetSource target) {
+			values = new MemoryBuffer(Layout.RECORD_COUNT * 4);
+			read = new ReadBatch(Layout.RECORD_COUNT);
+			for (int i = 0; i < Layout.RECORD_COUNT; i++) {
+				read.add(target.base + Layout.RECORDS + i * Layout.RECORD_SIZE, 4, values, i * 4);
+			}
+			// every write lands on the scratch slot, so the records stay intact
+			write = new WriteBatch();
+			for (int i = 0; i < 64; i++) {
+				write.putLong(target.base + Layout.WRITE, i);
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			read.free();
+			write.free();
+			values.free();
+		}
+
+	}
+
+	@Benchmark
+	public int readInt(TargetSource target) {
+		return target.source.readInt(target.base + Layout.INT);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public int readIntThreads(TargetSource target) {
+		return target.source.readInt(target.base + Layout.INT);
+	}
+
+	@Benchmark
+	public long readLong(TargetSource target) {
+		return target.source.readLong(target.base + Layout.LONG);
+	}
+
+	@Benchmark
+	public double readDouble(TargetSource target) {
+		return target.source.readDouble(target.base + Layout.DOUBLE);
+	}
+
+	@Benchmark
+	public int readThroughPointer(TargetSource target) {
+		return target.source.readByte(target.source.readPointer(target.base + Layout.POINTER));
+	}
+
+	@Benchmark
+	public ReadBatch readBatch(TargetSource target, Batches batches) {
+		return target.source.read(batches.read);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public ReadBatch readBatchThreads(TargetSource target, Batches batches) {
+		return target.source.read(batches.read);
+	}
+
+	/**
+	 * The same records as {@link #readBatch}, one call each.
+	 */
+	@Benchmark
+	public void readRecordsSingly(TargetSource target, Blackhole blackhole) {
+		for (int i = 0; i < Layout.RECORD_COUNT; i++) {
+			blackhole.consume(target.source.readInt(target.base + Layout.RECORDS + i * Layout.RECORD_SIZE));
+		}
+	}
+
+	@Benchmark
+	public void writeLong(TargetSource target) {
+		target.source.writeLong(target.base + Layout.WRITE, 42);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void writeLongThreads(TargetSource target) {
+		target.source.writeLong(target.base + Layout.WRITE, 42);
+	}
+
+	@Benchmark
+	public WriteBatch writeBatch(TargetSource target, Batches batches) {
+		return target.source.write(batches.write);
+	}
+
+}
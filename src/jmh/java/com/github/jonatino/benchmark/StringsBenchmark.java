@@ -0,0 +1,110 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.benchmark;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.misc.Strings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * String decoding and interning, on its own and as part of a remote read.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringsBenchmark {
+
+	@State(Scope.Thread)
+	public static class Names {
+
+		byte[] cached;
+		byte[][] distinct;
+		MemoryBuffer memory;
+		int next;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			cached = (Layout.STRING_VALUE + "\0\0\0\0\0\0\0\0").getBytes(StandardCharsets.US_ASCII);
+			// more names than the intern cache holds, so most lookups miss
+			distinct = new byte[Strings.capacity() * 4][];
+			for (int i = 0; i < distinct.length; i++) {
+				distinct[i] = ("entity_" + i).getBytes(StandardCharsets.US_ASCII);
+			}
+			memory = new MemoryBuffer(cached);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			memory.free();
+		}
+
+	}
+
+	@Benchmark
+	public String transform(Names names) {
+		return Strings.transform(names.cached);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String transformThreads(Names names) {
+		return Strings.transform(names.cached);
+	}
+
+	@Benchmark
+	public String transformMiss(Names names) {
+		return Strings.transform(names.distinct[names.next++ & (names.distinct.length - 1)]);
+	}
+
+	@Benchmark
+	public String decode(Names names) {
+		return Strings.decode(names.memory, Strings.Encoding.ASCII);
+	}
+
+	@Benchmark
+	public String readString(TargetSource target) {
+		return target.source.readString(target.base + Layout.STRING, 32);
+	}
+
+	@Benchmark
+	public String readCString(TargetSource target) {
+		return target.source.readCString(target.base + Layout.STRING);
+	}
+
+	@Benchmark
+	public String readWString(TargetSource target) {
+		return target.source.readWString(target.base + Layout.WSTRING);
+	}
+
+}
@@ -0,0 +1,78 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.benchmark;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.natives.unix.libc;
+import com.sun.jna.Pointer;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Paths;
+
+/**
+ * Where a {@link Layout} lives: either a freshly spawned {@link TargetProcess}, or this very process for the
+ * backends that can only read their own memory.
+ */
+final class Target implements Closeable {
+
+	final int pid;
+	final long base;
+
+	private final Process child;
+	private final MemoryBuffer local;
+
+	private Target(int pid, long base, Process child, MemoryBuffer local) {
+		this.pid = pid;
+		this.base = base;
+		this.child = child;
+		this.local = local;
+	}
+
+	static Target local() {
+		MemoryBuffer memory = Layout.create();
+		return new Target(libc.getpid(), Pointer.nativeValue(memory), null, memory);
+	}
+
+	static Target spawn() throws IOException {
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		Process child = new ProcessBuilder(java, "-Xmx64m", "-cp", System.getProperty("java.class.path"), TargetProcess.class.getName())
+				.redirectError(ProcessBuilder.Redirect.INHERIT)
+				.start();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(child.getInputStream()));
+		String line = reader.readLine();
+		if (line == null) {
+			child.destroy();
+			throw new IOException("Target process exited before reporting its layout");
+		}
+		String[] split = line.trim().split(" ");
+		return new Target(Integer.parseInt(split[0]), Long.parseLong(split[1]), child, null);
+	}
+
+	@Override
+	public void close() {
+		if (child != null) {
+			child.destroy();
+		}
+		if (local != null) {
+			local.free();
+		}
+	}
+
+}
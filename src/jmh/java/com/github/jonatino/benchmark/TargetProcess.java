@@ -0,0 +1,41 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.benchmark;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.natives.unix.libc;
+import com.sun.jna.Pointer;
+
+import java.io.IOException;
+
+/**
+ * The process the benchmarks read from. Builds the {@link Layout}, prints "&lt;pid&gt; &lt;address&gt;" on one
+ * line, then idles until its stdin is closed, which happens when the benchmark JVM exits.
+ */
+public final class TargetProcess {
+
+	public static void main(String[] args) throws IOException {
+		MemoryBuffer memory = Layout.create();
+		System.out.println(libc.getpid() + " " + Pointer.nativeValue(memory));
+		System.out.flush();
+		while (System.in.read() != -1) {
+			// nothing is ever sent
+		}
+		memory.free();
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.benchmark;
+
+import com.github.jonatino.process.DataSource;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+
+/**
+ * One target and one backend reading it, shared by every thread of a trial.
+ */
+@State(Scope.Benchmark)
+public class TargetSource {
+
+	@Param({"UNSAFE", "JNA", "JNI", "FFM", "PROC_MEM", "PTRACE"})
+	public Backend backend;
+
+	public DataSource source;
+	public long base;
+
+	private Target target;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		target = backend.target();
+		source = backend.open(target);
+		base = target.base;
+		if (source.readInt(base + Layout.INT) != Layout.INT_VALUE) {
+			throw new IllegalStateException(backend + " read the wrong layout at " + Long.toHexString(base));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		target.close();
+	}
+
+}
@@ -0,0 +1,253 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.misc;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The thread-local scratch memory behind {@link Cacheable#buffer(int)} and {@link Cacheable#array(int)}.
+ * <p>
+ * Requests are rounded up to a power-of-two size class, and each thread keeps at most one native slab per class,
+ * so finding a buffer is an array index and a thread holds at most 32 slabs no matter how many distinct sizes it
+ * reads. The returned {@link MemoryBuffer} reports the requested size, and stays valid until the same thread asks
+ * for another buffer of the same class, which takes the slab over; keep a copy of anything that must outlive that.
+ * <p>
+ * When caching a slab would exceed the per-thread or the global cap, the request is served by a transient buffer,
+ * which is freed by the thread's next request of the same class. Slabs and transients of threads that died are
+ * freed on the next request that finds them queued, or by {@link #reclaim()}.
+ */
+public final class BufferPool {
+
+	private static final int CLASSES = 32;
+	private static final int ARRAY_WAYS = 2;
+
+	private static volatile long threadCap = 64L << 20;
+	private static volatile long globalCap = 1L << 30;
+
+	private static final AtomicLong held = new AtomicLong();
+	private static final AtomicLong allocations = new AtomicLong();
+	private static final AtomicLong transients = new AtomicLong();
+	private static final AtomicLong reclaimed = new AtomicLong();
+
+	private static final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+	// keeps the references themselves reachable until they are enqueued
+	private static final Set<Reference<?>> tracked = ConcurrentHashMap.newKeySet();
+
+	private static final ThreadLocal<Slabs> slabs = ThreadLocal.withInitial(Slabs::new);
+
+	private BufferPool() {
+		throw new UnsupportedOperationException();
+	}
+
+	public static MemoryBuffer buffer(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Negative size " + size);
+		}
+		drain();
+		Slabs slabs = BufferPool.slabs.get();
+		int sizeClass = sizeClass(size);
+		MemoryBuffer buffer = slabs.buffers[sizeClass];
+		if (buffer == null) {
+			buffer = slabs.allocate(sizeClass, size);
+		}
+		buffer.size(size);
+		return buffer;
+	}
+
+	public static byte[] array(int size) {
+		Slabs slabs = BufferPool.slabs.get();
+		int slot = sizeClass(size) * ARRAY_WAYS;
+		for (int way = 0; way < ARRAY_WAYS; way++) {
+			byte[] array = slabs.arrays[slot + way];
+			if (array != null && array.length == size)
+				return array;
+		}
+		byte[] array = new byte[size];
+		if (size <= threadCap) {
+			int way = slabs.nextWay[slot / ARRAY_WAYS]++ % ARRAY_WAYS;
+			slabs.arrays[slot + way] = array;
+		}
+		return array;
+	}
+
+	/**
+	 * Frees the slabs and transient buffers of threads that died.
+	 *
+	 * @return the number of bytes freed
+	 */
+	public static long reclaim() {
+		long freed = drain();
+		for (Iterator<Reference<?>> it = tracked.iterator(); it.hasNext(); ) {
+			Reference<?> reference = it.next();
+			if (reference instanceof Owner && ((Owner) reference).dead()) {
+				it.remove();
+				freed += ((Owner) reference).release();
+			}
+		}
+		return freed;
+	}
+
+	public static long threadCap() {
+		return threadCap;
+	}
+
+	public static void threadCap(long bytes) {
+		threadCap = bytes;
+	}
+
+	public static long globalCap() {
+		return globalCap;
+	}
+
+	public static void globalCap(long bytes) {
+		globalCap = bytes;
+	}
+
+	/**
+	 * Native bytes currently held in slabs, across all threads.
+	 */
+	public static long bytesHeld() {
+		return held.get();
+	}
+
+	/**
+	 * Slabs allocated so far.
+	 */
+	public static long allocations() {
+		return allocations.get();
+	}
+
+	/**
+	 * Requests served by a transient buffer because a cap was reached.
+	 */
+	public static long transients() {
+		return transients.get();
+	}
+
+	/**
+	 * Bytes freed after their thread died.
+	 */
+	public static long reclaimed() {
+		return reclaimed.get();
+	}
+
+	static int sizeClass(int size) {
+		return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+	}
+
+	private static long drain() {
+		long freed = 0;
+		Reference<?> reference;
+		while ((reference = queue.poll()) != null) {
+			tracked.remove(reference);
+			freed += ((Owner) reference).release();
+		}
+		return freed;
+	}
+
+	private static final class Slabs {
+
+		final MemoryBuffer[] buffers = new MemoryBuffer[CLASSES];
+		final byte[][] arrays = new byte[CLASSES * ARRAY_WAYS][];
+		final int[] nextWay = new int[CLASSES];
+		final Owner owner = new Owner(Thread.currentThread());
+		long bytes;
+
+		Slabs() {
+			tracked.add(owner);
+		}
+
+		MemoryBuffer allocate(int sizeClass, int size) {
+			long capacity = 1L << sizeClass;
+			if (capacity > Integer.MAX_VALUE || bytes + capacity > threadCap || held.get() + capacity > globalCap) {
+				transients.incrementAndGet();
+				MemoryBuffer buffer = new MemoryBuffer(size);
+				synchronized (owner) {
+					// the previous transient of this class is past its validity now
+					if (owner.transients[sizeClass] != 0)
+						Native.free(owner.transients[sizeClass]);
+					owner.transients[sizeClass] = Pointer.nativeValue(buffer);
+				}
+				return buffer;
+			}
+			MemoryBuffer buffer = new MemoryBuffer((int) capacity);
+			synchronized (owner) {
+				if (owner.transients[sizeClass] != 0) {
+					Native.free(owner.transients[sizeClass]);
+					owner.transients[sizeClass] = 0;
+				}
+				owner.addresses[sizeClass] = Pointer.nativeValue(buffer);
+				owner.sizes[sizeClass] = capacity;
+			}
+			buffers[sizeClass] = buffer;
+			bytes += capacity;
+			held.addAndGet(capacity);
+			allocations.incrementAndGet();
+			return buffer;
+		}
+
+	}
+
+	/*
+	 * Knows which slabs a thread holds without keeping the thread or its Slabs reachable.
+	 */
+	private static final class Owner extends WeakReference<Thread> {
+
+		final long[] addresses = new long[CLASSES];
+		final long[] sizes = new long[CLASSES];
+		// the live transient buffer of each class, which isn't counted as held
+		final long[] transients = new long[CLASSES];
+
+		Owner(Thread thread) {
+			super(thread, queue);
+		}
+
+		boolean dead() {
+			Thread thread = get();
+			return thread == null || !thread.isAlive();
+		}
+
+		synchronized long release() {
+			long freed = 0;
+			for (int i = 0; i < CLASSES; i++) {
+				if (addresses[i] != 0) {
+					Native.free(addresses[i]);
+					freed += sizes[i];
+					addresses[i] = sizes[i] = 0;
+				}
+				if (transients[i] != 0) {
+					Native.free(transients[i]);
+					transients[i] = 0;
+				}
+			}
+			held.addAndGet(-freed);
+			reclaimed.addAndGet(freed);
+			return freed;
+		}
+
+	}
+
+}
@@ -19,29 +19,20 @@ package com.github.jonatino.misc;
 import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.WinDef;
 import com.sun.jna.ptr.IntByReference;
-import it.unimi.dsi.fastutil.ints.Int2ObjectArrayMap;
-
-import java.util.function.Function;
 
 public final class Cacheable {
 
-	private static final ThreadLocal<Int2ObjectArrayMap<MemoryBuffer>> bufferCache = ThreadLocal.withInitial(() -> new Int2ObjectArrayMap<MemoryBuffer>());
-	private static final Function<Integer, MemoryBuffer> bufferCreate = MemoryBuffer::new;
-
-	private static final ThreadLocal<Int2ObjectArrayMap<byte[]>> arrayCache = ThreadLocal.withInitial(() -> new Int2ObjectArrayMap<>());
-	private static final Function<Integer, byte[]> arrayCreate = byte[]::new;
-
 	private static final ThreadLocal<Pointer> cachedPointer = ThreadLocal.withInitial(() -> new Pointer(0));
 
 	public static final IntByReference INT_BY_REF = new IntByReference();
 	public static final WinDef.DWORD DWORD_ZERO = new WinDef.DWORD();
 
 	public static MemoryBuffer buffer(int size) {
-		return bufferCache.get().computeIfAbsent(size, bufferCreate);
+		return BufferPool.buffer(size);
 	}
 
 	public static byte[] array(int size) {
-		return arrayCache.get().computeIfAbsent(size, arrayCreate);
+		return BufferPool.array(size);
 	}
 
 	public static Pointer pointer(long address) {
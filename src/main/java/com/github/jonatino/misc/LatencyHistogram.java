@@ -0,0 +1,128 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.misc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds, laid out like an HdrHistogram: every power of two is split
+ * into {@value #SUB_BUCKETS} equal buckets, so any recorded value is reported within about 3% while the whole
+ * range of a long fits in under 2000 counters. Recording is a few atomic increments and never allocates;
+ * percentiles are computed from a copy of the counters, so they are consistent enough while recording goes on.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder total = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		counts.incrementAndGet(bucket(nanos));
+		total.increment();
+		sum.add(nanos);
+		long current;
+		while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+		}
+	}
+
+	public long count() {
+		return total.sum();
+	}
+
+	public long max() {
+		return max.get();
+	}
+
+	public double mean() {
+		long count = count();
+		return count == 0 ? 0 : (double) sum.sum() / count;
+	}
+
+	/**
+	 * The value at {@code percentile} (0 to 100), rounded up to the top of its bucket, or 0 if nothing was recorded.
+	 */
+	public long percentile(double percentile) {
+		return percentiles(percentile)[0];
+	}
+
+	/**
+	 * Like {@link #percentile(double)} for several percentiles in ascending order, from the same copy of the counters.
+	 */
+	public long[] percentiles(double... percentiles) {
+		long[] copy = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += copy[i] = counts.get(i);
+		}
+		long[] values = new long[percentiles.length];
+		if (count == 0)
+			return values;
+		int bucket = 0;
+		long seen = copy[0];
+		for (int p = 0; p < percentiles.length; p++) {
+			long rank = Math.max(1, (long) Math.ceil(Math.min(percentiles[p], 100) / 100 * count));
+			while (seen < rank && bucket < BUCKETS - 1)
+				seen += copy[++bucket];
+			values[p] = Math.min(highest(bucket), max());
+		}
+		return values;
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+		total.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	static int bucket(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BITS;
+		return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	/*
+	 * The largest value that lands in `bucket`.
+	 */
+	static long highest(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		int shift = (bucket >>> SUB_BITS) - 1;
+		long mantissa = SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1));
+		long next = (mantissa + 1) << shift;
+		return next <= 0 ? Long.MAX_VALUE : next - 1;
+	}
+
+	@Override
+	public String toString() {
+		long[] values = percentiles(50, 99);
+		return "LatencyHistogram{count=" + count() + ", p50=" + values[0] + ", p99=" + values[1] + ", max=" + max() + '}';
+	}
+
+}
@@ -19,11 +19,20 @@ package com.github.jonatino.misc;
 import com.github.jonatino.process.DataSource;
 import com.sun.jna.Native;
 import com.sun.jna.Pointer;
+import sun.misc.Unsafe;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Created by Jonathan on 1/10/2016.
+ * <p>
+ * Typed accessors and bulk copies go straight to memory through {@link Unsafe} instead of one JNA call per value
+ * or per byte. Like {@link Pointer}, offsets are not bounds checked.
  */
 public final class MemoryBuffer extends Pointer {
+
+	private static final Unsafe unsafe = Unsafes.UNSAFE;
 	
 	private int size;
 	public DataSource _lastreadsrc;
@@ -51,44 +60,75 @@ public final class MemoryBuffer extends Pointer {
 	}
 
 	public MemoryBuffer putBoolean(boolean value) {
-		setByte(0, (byte) (value ? 1 : 0));
-		return this;
+		return putBoolean(0, value);
 	}
 
 	public MemoryBuffer putByte(int value) {
-		setByte(0, (byte) value);
-		return this;
+		return putByte(0, value);
 	}
 
 	public MemoryBuffer putShort(int value) {
-		setShort(0, (short) value);
-		return this;
+		return putShort(0, value);
 	}
 
 	public MemoryBuffer putInt(int value) {
-		setInt(0, value);
-		return this;
+		return putInt(0, value);
 	}
 
 	public MemoryBuffer putLong(long value) {
-		setLong(0, value);
-		return this;
+		return putLong(0, value);
 	}
 
 	public MemoryBuffer putFloat(float value) {
-		setFloat(0, value);
-		return this;
+		return putFloat(0, value);
 	}
 
 	public MemoryBuffer putDouble(double value) {
-		setDouble(0, value);
+		return putDouble(0, value);
+	}
+
+	public MemoryBuffer putBoolean(long offset, boolean value) {
+		unsafe.putByte(peer + offset, (byte) (value ? 1 : 0));
+		return this;
+	}
+
+	public MemoryBuffer putByte(long offset, int value) {
+		unsafe.putByte(peer + offset, (byte) value);
+		return this;
+	}
+
+	public MemoryBuffer putShort(long offset, int value) {
+		unsafe.putShort(peer + offset, (short) value);
+		return this;
+	}
+
+	public MemoryBuffer putInt(long offset, int value) {
+		unsafe.putInt(peer + offset, value);
+		return this;
+	}
+
+	public MemoryBuffer putLong(long offset, long value) {
+		unsafe.putLong(peer + offset, value);
+		return this;
+	}
+
+	public MemoryBuffer putFloat(long offset, float value) {
+		unsafe.putFloat(peer + offset, value);
+		return this;
+	}
+
+	public MemoryBuffer putDouble(long offset, double value) {
+		unsafe.putDouble(peer + offset, value);
 		return this;
 	}
 
 	public MemoryBuffer setBytes(long offset, byte[] data) {
-		for (int i = 0; i < data.length; ++i) {
-			setByte(offset + i, data[i]);
-		}
+		return setBytes(offset, data, 0, data.length);
+	}
+
+	public MemoryBuffer setBytes(long offset, byte[] data, int from, int length) {
+		Utils.arrayBytes(data.length, from, length, 1);
+		unsafe.copyMemory(data, Unsafe.ARRAY_BYTE_BASE_OFFSET + from, null, peer + offset, length);
 		return this;
 	}
 	
@@ -96,14 +136,23 @@ public final class MemoryBuffer extends Pointer {
 		return setBytes(0, data, Math.min(this.size(), data.size()));
 	}
 	
+	/**
+	 * Copies {@code data} to {@code offset}, cut short at the end of this buffer.
+	 */
 	public MemoryBuffer setBytes(long offset, MemoryBuffer data) {
-		return setBytes(0, data, Math.min(this.size(), offset + data.size()));
+		return setBytes(offset, data, Math.min(data.size(), this.size() - offset));
 	}
 	
 	public MemoryBuffer setBytes(long offset, Pointer data, long length) {
-		for (int i = 0; i < length; ++i) {
-			this.setByte(offset + i, data.getByte(i));
-		}
+		unsafe.copyMemory(Pointer.nativeValue(data), peer + offset, length);
+		return this;
+	}
+
+	/**
+	 * Copies the remaining bytes of {@code data} to {@code offset} and advances its position past them.
+	 */
+	public MemoryBuffer setBytes(long offset, ByteBuffer data) {
+		asByteBuffer(offset, data.remaining()).put(data);
 		return this;
 	}
 
@@ -112,8 +161,36 @@ public final class MemoryBuffer extends Pointer {
 		return this;
 	}
 
+	/**
+	 * Copies {@code length} bytes at {@code offset} into {@code dest} at {@code from}.
+	 */
+	public byte[] getBytes(long offset, byte[] dest, int from, int length) {
+		Utils.arrayBytes(dest.length, from, length, 1);
+		unsafe.copyMemory(null, peer + offset, dest, Unsafe.ARRAY_BYTE_BASE_OFFSET + from, length);
+		return dest;
+	}
+
+	/**
+	 * Fills the remaining space of {@code dest} with the bytes at {@code offset} and advances its position.
+	 */
+	public ByteBuffer getBytes(long offset, ByteBuffer dest) {
+		return dest.put(asByteBuffer(offset, dest.remaining()));
+	}
+
+	/**
+	 * A direct buffer over the same native memory in native byte order, so nothing is copied either way. It is only
+	 * valid for as long as this buffer is.
+	 */
+	public ByteBuffer asByteBuffer() {
+		return asByteBuffer(0, size);
+	}
+
+	public ByteBuffer asByteBuffer(long offset, int length) {
+		return getByteBuffer(offset, length).order(ByteOrder.nativeOrder());
+	}
+
 	public void get(byte[] dest) {
-		read(0, dest, 0, dest.length);
+		getBytes(0, dest, 0, dest.length);
 	}
 
 	public boolean getBoolean() {
@@ -153,10 +230,87 @@ public final class MemoryBuffer extends Pointer {
 		return getDouble(0);
 	}
 
+	@Override
+	public byte getByte(long offset) {
+		return unsafe.getByte(peer + offset);
+	}
+
+	@Override
+	public short getShort(long offset) {
+		return unsafe.getShort(peer + offset);
+	}
+
+	@Override
+	public int getInt(long offset) {
+		return unsafe.getInt(peer + offset);
+	}
+
+	@Override
+	public long getLong(long offset) {
+		return unsafe.getLong(peer + offset);
+	}
+
+	@Override
+	public float getFloat(long offset) {
+		return unsafe.getFloat(peer + offset);
+	}
+
+	@Override
+	public double getDouble(long offset) {
+		return unsafe.getDouble(peer + offset);
+	}
+
+	@Override
+	public void setByte(long offset, byte value) {
+		unsafe.putByte(peer + offset, value);
+	}
+
+	@Override
+	public void setShort(long offset, short value) {
+		unsafe.putShort(peer + offset, value);
+	}
+
+	@Override
+	public void setInt(long offset, int value) {
+		unsafe.putInt(peer + offset, value);
+	}
+
+	@Override
+	public void setLong(long offset, long value) {
+		unsafe.putLong(peer + offset, value);
+	}
+
+	@Override
+	public void setFloat(long offset, float value) {
+		unsafe.putFloat(peer + offset, value);
+	}
+
+	@Override
+	public void setDouble(long offset, double value) {
+		unsafe.putDouble(peer + offset, value);
+	}
+
 	public int size() {
 		return size;
 	}
 
+	/**
+	 * Points this buffer at {@code size} bytes of native memory at {@code address}, so one instance can serve as a
+	 * view over many ranges in turn. Nothing is copied or freed.
+	 */
+	public MemoryBuffer wrap(long address, int size) {
+		this.peer = address;
+		this.size = size;
+		return this;
+	}
+
+	/*
+	 * Lets BufferPool hand out one slab under the different sizes of its size class.
+	 */
+	void size(int size) {
+		this.size = size;
+	}
+
 	public DataSource lastReadSource() {
 		return _lastreadsrc;
 	}
@@ -16,37 +16,221 @@
 
 package com.github.jonatino.misc;
 
-import it.unimi.dsi.fastutil.longs.Long2ObjectArrayMap;
+import com.sun.jna.Pointer;
 import net.openhft.hashing.LongHashFunction;
+import sun.misc.Unsafe;
+
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Created by Jonathan on 12/21/2015.
+ * <p>
+ * Strings read from memory are interned in a bounded cache keyed by the hash of their bytes, so reading the same
+ * name every tick costs a hash of native memory and no allocation. The cache is split into small buckets that
+ * each evict with the CLOCK algorithm, and is safe to use from any number of threads.
  */
 public final class Strings {
 
-	private static Long2ObjectArrayMap<String> stringCache = new Long2ObjectArrayMap<>(16_982);
+	public enum Encoding {
+
+		ASCII(StandardCharsets.US_ASCII, 1),
+		UTF_8(StandardCharsets.UTF_8, 1),
+		UTF_16LE(StandardCharsets.UTF_16LE, 2);
+
+		private final Charset charset;
+		private final int unit;
+
+		Encoding(Charset charset, int unit) {
+			this.charset = charset;
+			this.unit = unit;
+		}
+
+		/**
+		 * Bytes per code unit, which is also the size of the terminator.
+		 */
+		public int unit() {
+			return unit;
+		}
+
+	}
+
+	private static final int CAPACITY = 16_384;
+	private static final int WAYS = 4;
+
+	private static final Unsafe unsafe = Unsafes.UNSAFE;
+
+	private static final long LOW_BYTES = 0x0101010101010101L;
+	private static final long HIGH_BYTES = 0x8080808080808080L;
+	private static final long LOW_CHARS = 0x0001000100010001L;
+	private static final long HIGH_CHARS = 0x8000800080008000L;
+
+	private static final LongHashFunction HASH = LongHashFunction.xx();
+
+	private static final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(CAPACITY);
+	// CLOCK bits and hands; races on these only make eviction slightly less accurate
+	private static final boolean[] referenced = new boolean[CAPACITY];
+	private static final byte[] hands = new byte[CAPACITY / WAYS];
+
+	private static final LongAdder hits = new LongAdder();
+	private static final LongAdder misses = new LongAdder();
+	private static final LongAdder evictions = new LongAdder();
 
 	public static String transform(byte[] bytes) {
-		long hash = LongHashFunction.xx().hashBytes(bytes);
-		if (stringCache.containsKey(hash)) {
-			return stringCache.get(hash);
+		int length = 0;
+		while (length < bytes.length && bytes[length] != 0)
+			length++;
+		long key = HASH.hashBytes(bytes, 0, length) ^ Encoding.UTF_8.ordinal();
+		String string = lookup(key, length);
+		if (string == null) {
+			string = intern(key, length, new String(bytes, 0, length, StandardCharsets.UTF_8));
 		}
+		return string;
+	}
+
+	/**
+	 * Decodes the string at the start of {@code buffer}, up to its terminator or the end of the buffer.
+	 */
+	public static String decode(MemoryBuffer buffer, Encoding encoding) {
+		return decode(Pointer.nativeValue(buffer), buffer.size(), encoding);
+	}
+
+	/**
+	 * Decodes the string at native address {@code address}, up to its terminator or {@code limit} bytes. On a
+	 * cache hit nothing is copied or allocated.
+	 */
+	public static String decode(long address, int limit, Encoding encoding) {
+		int length = terminator(address, limit, encoding);
+		long key = HASH.hashMemory(address, length) ^ encoding.ordinal();
+		String string = lookup(key, length);
+		if (string == null) {
+			byte[] bytes = new byte[length];
+			unsafe.copyMemory(null, address, bytes, Unsafe.ARRAY_BYTE_BASE_OFFSET, length);
+			string = intern(key, length, encoding == Encoding.ASCII ? ascii(bytes) : new String(bytes, encoding.charset));
+		}
+		return string;
+	}
+
+	/**
+	 * Number of bytes before the first terminator of {@code encoding} within {@code limit} bytes, or the largest
+	 * whole number of code units that fit in {@code limit} when there is none. Scans a word at a time.
+	 */
+	public static int terminator(long address, int limit, Encoding encoding) {
 		int i = 0;
-		for (i = 0; i < bytes.length; i++) {
-			if (bytes[i] == 0) //bytes[i] = ' ';
-				break;
+		if (encoding.unit == 1) {
+			for (; i + 8 <= limit; i += 8) {
+				long word = unsafe.getLong(address + i);
+				if (((word - LOW_BYTES) & ~word & HIGH_BYTES) != 0)
+					break;
+			}
+			for (; i < limit; i++) {
+				if (unsafe.getByte(address + i) == 0)
+					return i;
+			}
+			return limit;
 		}
-		byte[] buf = new byte[i];
-		for (i = 0; i < buf.length; i++) {
-			buf[i] = bytes[i];
+		if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) {
+			for (; i + 8 <= limit; i += 8) {
+				long word = unsafe.getLong(address + i);
+				if (((word - LOW_CHARS) & ~word & HIGH_CHARS) != 0)
+					break;
+			}
 		}
-		String string = new String(buf);
-		stringCache.put(hash, string);
-		return string;
+		for (; i + 2 <= limit; i += 2) {
+			if (unsafe.getShort(address + i) == 0)
+				return i;
+		}
+		return i;
+	}
+
+	public static long hits() {
+		return hits.sum();
+	}
+
+	public static long misses() {
+		return misses.sum();
+	}
+
+	public static long evictions() {
+		return evictions.sum();
+	}
+
+	public static double hitRate() {
+		long hits = hits(), total = hits + misses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	public static int capacity() {
+		return CAPACITY;
+	}
+
+	public static void resetStats() {
+		hits.reset();
+		misses.reset();
+		evictions.reset();
 	}
 
 	public static String hex(int value) {
 		return "0x" + Integer.toHexString(value).toUpperCase();
 	}
 
-}
\ No newline at end of file
+	private static String lookup(long key, int length) {
+		int bucket = bucket(key);
+		for (int way = 0; way < WAYS; way++) {
+			Entry entry = entries.get(bucket + way);
+			if (entry != null && entry.key == key && entry.length == length) {
+				referenced[bucket + way] = true;
+				hits.increment();
+				return entry.value;
+			}
+		}
+		misses.increment();
+		return null;
+	}
+
+	private static String intern(long key, int length, String value) {
+		Entry entry = new Entry(key, length, value);
+		int bucket = bucket(key);
+		for (int way = 0; way < WAYS; way++) {
+			if (entries.get(bucket + way) == null && entries.compareAndSet(bucket + way, null, entry))
+				return value;
+		}
+		int hand = hands[bucket / WAYS];
+		for (int sweep = 0; sweep < WAYS * 2; sweep++, hand = (hand + 1) % WAYS) {
+			if (!referenced[bucket + hand])
+				break;
+			referenced[bucket + hand] = false;
+		}
+		hands[bucket / WAYS] = (byte) ((hand + 1) % WAYS);
+		entries.set(bucket + hand, entry);
+		evictions.increment();
+		return value;
+	}
+
+	private static int bucket(long key) {
+		return (int) (key ^ key >>> 32) & (CAPACITY - WAYS);
+	}
+
+	@SuppressWarnings("deprecation")
+	private static String ascii(byte[] bytes) {
+		return new String(bytes, 0, 0, bytes.length);
+	}
+
+	private static final class Entry {
+
+		final long key;
+		final int length;
+		final String value;
+
+		Entry(long key, int length, String value) {
+			this.key = key;
+			this.length = length;
+			this.value = value;
+		}
+
+	}
+
+}
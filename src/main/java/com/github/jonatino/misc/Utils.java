@@ -36,4 +36,18 @@ public final class Utils {
 		}
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Checks that [off, off + len) lies within an array of {@code length} elements of {@code scale} bytes, and
+	 * returns the number of bytes it spans.
+	 */
+	public static int arrayBytes(int length, int off, int len, int scale) {
+		if (off < 0 || len < 0 || off > length - len) {
+			throw new ArrayIndexOutOfBoundsException("Range [" + off + ", " + off + " + " + len + ") out of bounds for length " + length);
+		}
+		if (len > Integer.MAX_VALUE / scale) {
+			throw new IllegalArgumentException(len + " elements of " + scale + " bytes don't fit in one read");
+		}
+		return len * scale;
+	}
+
+}
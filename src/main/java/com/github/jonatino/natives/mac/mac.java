@@ -42,6 +42,9 @@ public final class mac {
 
 	public static native int vm_read(int taskId, Pointer address, int size, PointerByReference buffer, IntByReference ref);
 
+	/* Copies into memory the caller owns, where vm_read hands back a new region. */
+	public static native int vm_read_overwrite(int taskId, long address, long size, long buffer, long[] read);
+
 	public static native String mach_error_string(int result) throws LastErrorException;
 
 }
\ No newline at end of file
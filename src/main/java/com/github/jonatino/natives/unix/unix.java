@@ -30,6 +30,9 @@ public final class unix {
 		Native.register(NativeLibrary.getInstance("c"));
 	}
 
+	// the errno process_vm_readv/writev report for a bad address; any other means the process couldn't be reached
+	public static final int EFAULT = 14;
+
 	public static native long ptrace(/* enum __ptrace_request */ long request, /* pid_t */ int pid, long addr, long data);
 
 	public static native long waitpid(/* pid_t */ int pid, long status, int options);
@@ -40,6 +43,11 @@ public final class unix {
 
 	public static native long process_vm_writev(int pid, iovec local, long liovcnt, iovec remote, long riovcnt, long flags) throws LastErrorException;
 
+	/* Raw struct iovec * variants, used by the vectored batch paths. Return -1 instead of throwing. */
+	public static native long process_vm_readv(int pid, long local, long liovcnt, long remote, long riovcnt, long flags);
+
+	public static native long process_vm_writev(int pid, long local, long liovcnt, long remote, long riovcnt, long flags);
+
 	public static long process_vm_writeva(int pid, iovec local, long liovcnt, iovec remote, long riovcnt, long flags) throws LastErrorException {
 		// System.out.println("S: [" + pid + "] Writing: " + hex(Pointer.nativeValue(local.iov_base)) + " > " + hex(Pointer.nativeValue(remote.iov_base)) + ": len: " + local.iov_len + " > " + remote.iov_len);
 		return process_vm_writev(pid, local, liovcnt, remote, riovcnt, flags);
@@ -36,4 +36,19 @@ public final class unixc {
 
 	public static native long mem_write(int pid, long[] localaddr, long[] remoteaddr, int[] size) throws LastErrorException;
 
+	/*
+	 * Transfers a table of `count` descriptors laid out by VectoredBatch#descriptors() in one JNI call, writing the
+	 * bytes transferred for each entry back into the table. Returns the number of entries transferred in full, or
+	 * -errno when the target can't be accessed at all.
+	 */
+	public static native long mem_readv(int pid, long table, int count);
+
+	public static native long mem_writev(int pid, long table, int count);
+
+	/*
+	 * Reads `size` bytes straight into a primitive array, `offset` bytes past its first element, inside a
+	 * GetPrimitiveArrayCritical region. Returns the number of bytes read, or -1.
+	 */
+	public static native long mem_read_array(int pid, long remoteaddr, Object array, long offset, int size);
+
 }
\ No newline at end of file
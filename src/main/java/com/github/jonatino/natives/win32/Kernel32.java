@@ -40,6 +40,9 @@ public final class Kernel32 {
 
 	public static native long ReadProcessMemory(Pointer process, Pointer address, Pointer memory, int size, int written);
 
+	/* Raw address variant, so reads into caller-owned memory don't go through a shared Pointer. */
+	public static native long ReadProcessMemory(Pointer process, long address, long memory, int size, int written);
+
 	public static native long WriteProcessMemory(Pointer process, Pointer address, Pointer memory, int size, int written);
 
 }
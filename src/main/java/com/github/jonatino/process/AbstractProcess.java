@@ -29,6 +29,7 @@ public abstract class AbstractProcess implements Process {
 	protected Map<String, Module> modules = new Object2ObjectArrayMap<>();
 
 	private final int id;
+	private volatile RegionIndex regionIndex;
 
 	public AbstractProcess(int id) {
 		this.id = id;
@@ -39,6 +40,32 @@ public abstract class AbstractProcess implements Process {
 		return id;
 	}
 
+	@Override
+	public RegionIndex regionIndex() {
+		RegionIndex index = regionIndex;
+		return index != null ? index : refreshRegionIndex();
+	}
+
+	@Override
+	public synchronized RegionIndex refreshRegionIndex() {
+		RegionTable table = regions();
+		RegionIndex index = regionIndex;
+		if (index == null || index.table() != table) {
+			initModules(table);
+			index = new RegionIndex(table, modules.values());
+			regionIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Builds the modules from {@code table}, the mappings a new region index is being built from, so the two
+	 * describe the same moment. Backends whose modules don't come from the mappings read them again instead.
+	 */
+	protected void initModules(RegionTable table) {
+		initModules();
+	}
+
 	@Override
 	public Module getModule(String moduleName) {
 		Module module = modules.isEmpty() ? null : modules.get(moduleName);
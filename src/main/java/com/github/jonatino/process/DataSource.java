@@ -19,6 +19,7 @@ package com.github.jonatino.process;
 import com.github.jonatino.misc.Cacheable;
 import com.github.jonatino.misc.MemoryBuffer;
 import com.github.jonatino.misc.Strings;
+import com.github.jonatino.misc.Utils;
 import com.sun.jna.Pointer;
 
 /**
@@ -35,45 +36,101 @@ public interface DataSource {
 	boolean canRead(Pointer address, int size);
 
 	default boolean readBoolean(long address) {
-		return read(address, 1).getBoolean();
+		return read(address, 1, scratchBuffer(1)).getBoolean();
 	}
 
 	default int readByte(long address) {
-		return read(address, 1).getByte();
+		return read(address, 1, scratchBuffer(1)).getByte();
 	}
 
 	default int readShort(long address) {
-		return read(address, 2).getShort();
+		return read(address, 2, scratchBuffer(2)).getShort();
 	}
 
 	default int readInt(long address) {
-		return read(address, 4).getInt();
+		return read(address, 4, scratchBuffer(4)).getInt();
 	}
 
 	default long readUnsignedInt(long address) {
-		return Integer.toUnsignedLong(read(address, 4).getInt());
+		return Integer.toUnsignedLong(read(address, 4, scratchBuffer(4)).getInt());
 	}
 
 	default long readLong(long address) {
-		return read(address, 8).getLong();
+		return read(address, 8, scratchBuffer(8)).getLong();
 	}
 
 	default float readFloat(long address) {
-		return read(address, 4).getFloat();
+		return read(address, 4, scratchBuffer(4)).getFloat();
 	}
 
 	default double readDouble(long address) {
-		return read(address, 8).getDouble();
+		return read(address, 8, scratchBuffer(8)).getDouble();
 	}
 
 	default String readString(long address, int length) {
-		byte[] bytes = Cacheable.array(length);
-		read(address, bytes.length).get(bytes);
-		return Strings.transform(bytes);
+		return readString(address, length, Strings.Encoding.UTF_8);
+	}
+
+	/**
+	 * Reads at most {@code length} bytes and decodes them up to the first terminator.
+	 */
+	default String readString(long address, int length, Strings.Encoding encoding) {
+		return Strings.decode(read(address, length, scratchBuffer(length)), encoding);
+	}
+
+	/**
+	 * Reads a NUL-terminated UTF-8 string of unknown length, in growing chunks that stop at page boundaries.
+	 */
+	default String readCString(long address) {
+		return readCString(address, StringBatch.DEFAULT_LIMIT);
+	}
+
+	default String readCString(long address, int limit) {
+		return StringBatch.read(this, address, limit, Strings.Encoding.UTF_8);
+	}
+
+	/**
+	 * Reads a terminated UTF-16LE string of unknown length, such as a Windows wide string.
+	 */
+	default String readWString(long address) {
+		return readWString(address, StringBatch.DEFAULT_LIMIT);
+	}
+
+	default String readWString(long address, int limit) {
+		return StringBatch.read(this, address, limit, Strings.Encoding.UTF_16LE);
 	}
 
 	default long readPointer(long address) {
-		return read(address, 8).getLong();
+		return read(address, 8, scratchBuffer(8)).getLong();
+	}
+
+	/**
+	 * Reads {@code len} bytes into {@code dst} starting at {@code off}: one read into scratch memory and one copy
+	 * into the array, which backends that can write into the array directly cut down to the read alone.
+	 */
+	default byte[] readBytes(long address, byte[] dst, int off, int len) {
+		read(address, Utils.arrayBytes(dst.length, off, len, 1), scratchBuffer(len)).read(0, dst, off, len);
+		return dst;
+	}
+
+	default int[] readInts(long address, int[] dst, int off, int len) {
+		read(address, Utils.arrayBytes(dst.length, off, len, 4), scratchBuffer(len << 2)).read(0, dst, off, len);
+		return dst;
+	}
+
+	default long[] readLongs(long address, long[] dst, int off, int len) {
+		read(address, Utils.arrayBytes(dst.length, off, len, 8), scratchBuffer(len << 3)).read(0, dst, off, len);
+		return dst;
+	}
+
+	default float[] readFloats(long address, float[] dst, int off, int len) {
+		read(address, Utils.arrayBytes(dst.length, off, len, 4), scratchBuffer(len << 2)).read(0, dst, off, len);
+		return dst;
+	}
+
+	default double[] readDoubles(long address, double[] dst, int off, int len) {
+		read(address, Utils.arrayBytes(dst.length, off, len, 8), scratchBuffer(len << 3)).read(0, dst, off, len);
+		return dst;
 	}
 
 	default MemoryBuffer read(Pointer address, int size) {
@@ -81,7 +138,7 @@ public interface DataSource {
 	}
 
 	default Process write(long address, MemoryBuffer buffer) {
-		return write(Cacheable.pointer(address), buffer);
+		return write(scratchPointer(address), buffer);
 	}
 
 	default MemoryBuffer read(long address, int size, MemoryBuffer target) {
@@ -103,36 +160,75 @@ public interface DataSource {
 		read(address, size, Pointer.nativeValue(target));
 	}
 
+	default ReadBatch read(ReadBatch batch) {
+		batch.reset();
+		for (int i = 0; i < batch.count(); i++) {
+			try {
+				read(batch.address(i), batch.length(i), batch.target(i));
+				batch.mark(i, true);
+			} catch (RuntimeException e) {
+				batch.mark(i, false);
+			}
+		}
+		return batch;
+	}
+
+	default WriteBatch write(WriteBatch batch) {
+		batch.reset();
+		MemoryBuffer view = new MemoryBuffer(0, 0);
+		for (int i = 0; i < batch.count(); i++) {
+			try {
+				write(batch.address(i), view.wrap(batch.local(i), batch.length(i)));
+				batch.mark(i, true);
+			} catch (RuntimeException e) {
+				batch.mark(i, false);
+			}
+		}
+		return batch;
+	}
+
 	default Process writeBoolean(long address, boolean value) {
-		return write(Cacheable.pointer(address), Cacheable.buffer(1).putBoolean(value));
+		return write(scratchPointer(address), scratchBuffer(1).putBoolean(value));
 	}
 
 	default Process writeByte(long address, int value) {
-		return write(Cacheable.pointer(address), Cacheable.buffer(1).putByte(value));
+		return write(scratchPointer(address), scratchBuffer(1).putByte(value));
 	}
 
 	default Process writeShort(long address, int value) {
-		return write(Cacheable.pointer(address), Cacheable.buffer(2).putShort(value));
+		return write(scratchPointer(address), scratchBuffer(2).putShort(value));
 	}
 
 	default Process writeInt(long address, int value) {
-		return write(Cacheable.pointer(address), Cacheable.buffer(4).putInt(value));
+		return write(scratchPointer(address), scratchBuffer(4).putInt(value));
 	}
 
 	default Process writeLong(long address, long value) {
-		return write(Cacheable.pointer(address), Cacheable.buffer(8).putLong(value));
+		return write(scratchPointer(address), scratchBuffer(8).putLong(value));
 	}
 
 	default Process writeFloat(long address, float value) {
-		return write(Cacheable.pointer(address), Cacheable.buffer(4).putFloat(value));
+		return write(scratchPointer(address), scratchBuffer(4).putFloat(value));
 	}
 
 	default Process writeDouble(long address, double value) {
-		return write(Cacheable.pointer(address), Cacheable.buffer(8).putDouble(value));
+		return write(scratchPointer(address), scratchBuffer(8).putDouble(value));
 	}
 
 	default boolean canRead(long address, int size) {
-		return canRead(Cacheable.pointer(address), size);
+		return canRead(scratchPointer(address), size);
+	}
+
+	/**
+	 * Temporary memory for the default methods, valid until the next request of a similar size. Comes from
+	 * {@link Cacheable}, so it is tied to the calling thread; a {@link ReadScope} hands out its own instead.
+	 */
+	default MemoryBuffer scratchBuffer(int size) {
+		return Cacheable.buffer(size);
+	}
+
+	default Pointer scratchPointer(long address) {
+		return Cacheable.pointer(address);
 	}
 
 }
@@ -0,0 +1,265 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.jonatino.process;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.misc.Strings;
+import com.sun.jna.Pointer;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link Process} that forwards everything to another one, for decorators to override only what they add.
+ * Modules looked up through it are rebound to it, so that reading them goes through the decorator too, and
+ * writes take the target address before forwarding, since the pointer may be a thread's scratch pointer that
+ * the wrapped process repositions while writing.
+ */
+public abstract class ForwardingProcess implements Process {
+
+	protected final Process process;
+
+	// modules of the process, rebound to read through this one
+	private final Map<Module, Module> modules = new ConcurrentHashMap<>();
+
+	protected ForwardingProcess(Process process) {
+		this.process = process;
+	}
+
+	public Process process() {
+		return process;
+	}
+
+	@Override
+	public int id() {
+		return process.id();
+	}
+
+	@Override
+	public void initModules() {
+		process.initModules();
+		unbindModules();
+	}
+
+	@Override
+	public void close() {
+		process.close();
+	}
+
+	@Override
+	public Module getModule(String moduleName) {
+		return rebind(process.getModule(moduleName));
+	}
+
+	@Override
+	public Module findModule(String moduleName) {
+		return rebind(process.findModule(moduleName));
+	}
+
+	@Override
+	public boolean hasRegions() {
+		return process.hasRegions();
+	}
+
+	@Override
+	public RegionTable regions() {
+		return process.regions();
+	}
+
+	@Override
+	public RegionIndex regionIndex() {
+		return process.regionIndex();
+	}
+
+	@Override
+	public RegionIndex refreshRegionIndex() {
+		return process.refreshRegionIndex();
+	}
+
+	@Override
+	public MemoryBuffer read(long address, int size) {
+		return process.read(address, size);
+	}
+
+	@Override
+	public void read(long address, int size, long target) {
+		process.read(address, size, target);
+	}
+
+	@Override
+	public final Process write(Pointer address, MemoryBuffer buffer) {
+		write(Pointer.nativeValue(address), address, buffer);
+		return this;
+	}
+
+	@Override
+	public boolean canRead(Pointer address, int size) {
+		return process.canRead(address, size);
+	}
+
+	@Override
+	public ReadBatch read(ReadBatch batch) {
+		return process.read(batch);
+	}
+
+	@Override
+	public WriteBatch write(WriteBatch batch) {
+		return process.write(batch);
+	}
+
+	@Override
+	public boolean readBoolean(long address) {
+		return process.readBoolean(address);
+	}
+
+	@Override
+	public int readByte(long address) {
+		return process.readByte(address);
+	}
+
+	@Override
+	public int readShort(long address) {
+		return process.readShort(address);
+	}
+
+	@Override
+	public int readInt(long address) {
+		return process.readInt(address);
+	}
+
+	@Override
+	public long readUnsignedInt(long address) {
+		return process.readUnsignedInt(address);
+	}
+
+	@Override
+	public long readLong(long address) {
+		return process.readLong(address);
+	}
+
+	@Override
+	public float readFloat(long address) {
+		return process.readFloat(address);
+	}
+
+	@Override
+	public double readDouble(long address) {
+		return process.readDouble(address);
+	}
+
+	@Override
+	public long readPointer(long address) {
+		return process.readPointer(address);
+	}
+
+	@Override
+	public String readString(long address, int length, Strings.Encoding encoding) {
+		return process.readString(address, length, encoding);
+	}
+
+	@Override
+	public byte[] readBytes(long address, byte[] dst, int off, int len) {
+		return process.readBytes(address, dst, off, len);
+	}
+
+	@Override
+	public int[] readInts(long address, int[] dst, int off, int len) {
+		return process.readInts(address, dst, off, len);
+	}
+
+	@Override
+	public long[] readLongs(long address, long[] dst, int off, int len) {
+		return process.readLongs(address, dst, off, len);
+	}
+
+	@Override
+	public float[] readFloats(long address, float[] dst, int off, int len) {
+		return process.readFloats(address, dst, off, len);
+	}
+
+	@Override
+	public double[] readDoubles(long address, double[] dst, int off, int len) {
+		return process.readDoubles(address, dst, off, len);
+	}
+
+	@Override
+	public MemoryBuffer scratchBuffer(int size) {
+		return process.scratchBuffer(size);
+	}
+
+	@Override
+	public Pointer scratchPointer(long address) {
+		return process.scratchPointer(address);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + '{' + process + '}';
+	}
+
+	/**
+	 * Writes {@code buffer} to {@code address} through the wrapped process; {@code at} is the address the pointer
+	 * held when the write was issued.
+	 */
+	protected void write(long at, Pointer address, MemoryBuffer buffer) {
+		process.write(address, buffer);
+	}
+
+	/**
+	 * Called once a module of the wrapped process has been rebound to this one.
+	 */
+	protected void bound(Module module) {
+	}
+
+	/**
+	 * The modules rebound so far.
+	 */
+	protected final Collection<Module> boundModules() {
+		return modules.values();
+	}
+
+	/**
+	 * Forgets the rebound modules, for when the modules of the wrapped process were read again.
+	 */
+	protected final void unbindModules() {
+		modules.clear();
+	}
+
+	/**
+	 * The region index of the wrapped process, or null if it has no region table.
+	 */
+	protected final RegionIndex index() {
+		return process.hasRegions() ? process.regionIndex() : null;
+	}
+
+	/*
+	 * The module as seen through this process, so that reading it goes through this process too.
+	 */
+	private Module rebind(Module module) {
+		if (module == null)
+			return null;
+		Module bound = modules.get(module);
+		if (bound == null) {
+			bound = modules.computeIfAbsent(module, m -> new Module(this, m.name(), m.pointer(), m.size(), m.permissions()));
+			bound(bound);
+		}
+		return bound;
+	}
+
+}
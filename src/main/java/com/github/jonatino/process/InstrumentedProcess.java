@@ -0,0 +1,630 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import com.github.jonatino.misc.LatencyHistogram;
+import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.misc.Strings;
+import com.sun.jna.Pointer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps a {@link Process} and records, for every kind of {@link Operation}, how many were issued, how many bytes
+ * they moved, how many failed and a latency histogram. Reads and writes are also counted per module, using the
+ * {@link RegionIndex} of the process to find the module. Recording never allocates, so this can stay wrapped
+ * around a process in production:
+ * <pre>
+ * Process process = new InstrumentedProcess(Processes.byName("target")).register();
+ * </pre>
+ * Batches count as one bulk read or write moving all of their bytes; a batch that didn't complete counts as a
+ * failure, and so does a {@code canRead} that answered false. Typed reads are recorded as such, while typed writes
+ * are recorded as writes. Module lookups done internally by {@link #getModule(String)} aren't recorded, but the
+ * modules it returns read through this process, so their reads are.
+ */
+public final class InstrumentedProcess extends ForwardingProcess implements InstrumentedProcessMXBean {
+
+	public enum Operation {
+
+		TYPED_READ("typed read"),
+		BULK_READ("bulk read"),
+		WRITE("write"),
+		CAN_READ("canRead"),
+		INIT_MODULES("initModules");
+
+		private final String label;
+
+		Operation(String label) {
+			this.label = label;
+		}
+
+		@Override
+		public String toString() {
+			return label;
+		}
+
+	}
+
+	private static final String OTHER = "[other]";
+
+	private final Metrics[] metrics = new Metrics[Operation.values().length];
+	private final Metrics typed, bulk, writes, canReads, initModules;
+
+	private volatile Attribution attribution;
+	private ObjectName name;
+
+	public InstrumentedProcess(Process process) {
+		super(process);
+		for (Operation operation : Operation.values()) {
+			metrics[operation.ordinal()] = new Metrics(operation);
+		}
+		typed = metrics[Operation.TYPED_READ.ordinal()];
+		bulk = metrics[Operation.BULK_READ.ordinal()];
+		writes = metrics[Operation.WRITE.ordinal()];
+		canReads = metrics[Operation.CAN_READ.ordinal()];
+		initModules = metrics[Operation.INIT_MODULES.ordinal()];
+		attribute(index());
+	}
+
+	public OperationStats stats(Operation operation) {
+		return metrics[operation.ordinal()].snapshot();
+	}
+
+	/**
+	 * Registers this process with the platform MBean server as
+	 * {@code com.github.jonatino:type=Process,pid=<pid>}.
+	 */
+	public synchronized InstrumentedProcess register() {
+		if (name == null) {
+			try {
+				ObjectName name = new ObjectName("com.github.jonatino:type=Process,pid=" + id());
+				ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+				this.name = name;
+			} catch (JMException e) {
+				throw new IllegalStateException("Failed to register the statistics of process " + id(), e);
+			}
+		}
+		return this;
+	}
+
+	public synchronized void unregister() {
+		if (name != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			} catch (JMException e) {
+				throw new IllegalStateException("Failed to unregister the statistics of process " + id(), e);
+			} finally {
+				name = null;
+			}
+		}
+	}
+
+	@Override
+	public void initModules() {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			super.initModules();
+			ok = true;
+		} finally {
+			initModules.record(start, 0, ok);
+		}
+		attribute(index());
+	}
+
+	@Override
+	public RegionIndex refreshRegionIndex() {
+		RegionIndex index = process.refreshRegionIndex();
+		attribute(index);
+		return index;
+	}
+
+	@Override
+	public MemoryBuffer read(long address, int size) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			MemoryBuffer buffer = process.read(address, size);
+			ok = true;
+			return buffer;
+		} finally {
+			bulk.record(start, size, ok);
+			count(address, size);
+		}
+	}
+
+	@Override
+	public void read(long address, int size, long target) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			process.read(address, size, target);
+			ok = true;
+		} finally {
+			bulk.record(start, size, ok);
+			count(address, size);
+		}
+	}
+
+	@Override
+	protected void write(long at, Pointer address, MemoryBuffer buffer) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			process.write(address, buffer);
+			ok = true;
+		} finally {
+			writes.record(start, buffer.size(), ok);
+			count(at, buffer.size());
+		}
+	}
+
+	@Override
+	public boolean canRead(Pointer address, int size) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			return ok = process.canRead(address, size);
+		} finally {
+			canReads.record(start, 0, ok);
+		}
+	}
+
+	@Override
+	public ReadBatch read(ReadBatch batch) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			process.read(batch);
+			ok = batch.complete();
+			return batch;
+		} finally {
+			bulk.record(start, count(batch), ok);
+		}
+	}
+
+	@Override
+	public WriteBatch write(WriteBatch batch) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			process.write(batch);
+			ok = batch.complete();
+			return batch;
+		} finally {
+			writes.record(start, count(batch), ok);
+		}
+	}
+
+	@Override
+	public boolean readBoolean(long address) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			boolean value = process.readBoolean(address);
+			ok = true;
+			return value;
+		} finally {
+			typed(start, address, 1, ok);
+		}
+	}
+
+	@Override
+	public int readByte(long address) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			int value = process.readByte(address);
+			ok = true;
+			return value;
+		} finally {
+			typed(start, address, 1, ok);
+		}
+	}
+
+	@Override
+	public int readShort(long address) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			int value = process.readShort(address);
+			ok = true;
+			return value;
+		} finally {
+			typed(start, address, 2, ok);
+		}
+	}
+
+	@Override
+	public int readInt(long address) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			int value = process.readInt(address);
+			ok = true;
+			return value;
+		} finally {
+			typed(start, address, 4, ok);
+		}
+	}
+
+	@Override
+	public long readUnsignedInt(long address) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			long value = process.readUnsignedInt(address);
+			ok = true;
+			return value;
+		} finally {
+			typed(start, address, 4, ok);
+		}
+	}
+
+	@Override
+	public long readLong(long address) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			long value = process.readLong(address);
+			ok = true;
+			return value;
+		} finally {
+			typed(start, address, 8, ok);
+		}
+	}
+
+	@Override
+	public float readFloat(long address) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			float value = process.readFloat(address);
+			ok = true;
+			return value;
+		} finally {
+			typed(start, address, 4, ok);
+		}
+	}
+
+	@Override
+	public double readDouble(long address) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			double value = process.readDouble(address);
+			ok = true;
+			return value;
+		} finally {
+			typed(start, address, 8, ok);
+		}
+	}
+
+	@Override
+	public long readPointer(long address) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			long value = process.readPointer(address);
+			ok = true;
+			return value;
+		} finally {
+			typed(start, address, 8, ok);
+		}
+	}
+
+	@Override
+	public String readString(long address, int length, Strings.Encoding encoding) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			String value = process.readString(address, length, encoding);
+			ok = true;
+			return value;
+		} finally {
+			bulk.record(start, length, ok);
+			count(address, length);
+		}
+	}
+
+	@Override
+	public byte[] readBytes(long address, byte[] dst, int off, int len) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			process.readBytes(address, dst, off, len);
+			ok = true;
+			return dst;
+		} finally {
+			bulk.record(start, len, ok);
+			count(address, len);
+		}
+	}
+
+	@Override
+	public int[] readInts(long address, int[] dst, int off, int len) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			process.readInts(address, dst, off, len);
+			ok = true;
+			return dst;
+		} finally {
+			bulk.record(start, (long) len * 4, ok);
+			count(address, len * 4);
+		}
+	}
+
+	@Override
+	public long[] readLongs(long address, long[] dst, int off, int len) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			process.readLongs(address, dst, off, len);
+			ok = true;
+			return dst;
+		} finally {
+			bulk.record(start, (long) len * 8, ok);
+			count(address, len * 8);
+		}
+	}
+
+	@Override
+	public float[] readFloats(long address, float[] dst, int off, int len) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			process.readFloats(address, dst, off, len);
+			ok = true;
+			return dst;
+		} finally {
+			bulk.record(start, (long) len * 4, ok);
+			count(address, len * 4);
+		}
+	}
+
+	@Override
+	public double[] readDoubles(long address, double[] dst, int off, int len) {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			process.readDoubles(address, dst, off, len);
+			ok = true;
+			return dst;
+		} finally {
+			bulk.record(start, (long) len * 8, ok);
+			count(address, len * 8);
+		}
+	}
+
+	@Override
+	public int getPid() {
+		return id();
+	}
+
+	@Override
+	public String getBackend() {
+		return process.getClass().getSimpleName();
+	}
+
+	@Override
+	public OperationStats getTypedReads() {
+		return typed.snapshot();
+	}
+
+	@Override
+	public OperationStats getBulkReads() {
+		return bulk.snapshot();
+	}
+
+	@Override
+	public OperationStats getWrites() {
+		return writes.snapshot();
+	}
+
+	@Override
+	public OperationStats getCanReads() {
+		return canReads.snapshot();
+	}
+
+	@Override
+	public OperationStats getInitModules() {
+		return initModules.snapshot();
+	}
+
+	@Override
+	public Map<String, Long> getModuleOperations() {
+		Attribution attribution = this.attribution;
+		return attribution == null ? new LinkedHashMap<>() : attribution.map(attribution.operations);
+	}
+
+	@Override
+	public Map<String, Long> getModuleBytes() {
+		Attribution attribution = this.attribution;
+		return attribution == null ? new LinkedHashMap<>() : attribution.map(attribution.bytes);
+	}
+
+	@Override
+	public String getDump() {
+		return dump();
+	}
+
+	/**
+	 * Everything recorded so far as a plain-text table, for logs and consoles.
+	 */
+	public String dump() {
+		StringBuilder out = new StringBuilder(1024);
+		out.append("process ").append(id()).append(" (").append(getBackend()).append(")\n");
+		out.append(String.format("%-12s %12s %14s %9s %10s %9s %9s %9s %9s %10s%n",
+				"operation", "count", "bytes", "failures", "mean ns", "p50", "p90", "p99", "p99.9", "max"));
+		for (Metrics metrics : this.metrics) {
+			out.append(metrics.snapshot()).append('\n');
+		}
+		Map<String, Long> operations = getModuleOperations(), bytes = getModuleBytes();
+		if (!operations.isEmpty()) {
+			out.append(String.format("%n%-40s %12s %14s%n", "module", "operations", "bytes"));
+			for (Map.Entry<String, Long> e : operations.entrySet()) {
+				if (e.getValue() > 0)
+					out.append(String.format("%-40s %12d %14d%n", e.getKey(), e.getValue(), bytes.get(e.getKey())));
+			}
+		}
+		return out.toString();
+	}
+
+	@Override
+	public void resetStats() {
+		for (Metrics metrics : this.metrics) {
+			metrics.reset();
+		}
+		Attribution attribution = this.attribution;
+		if (attribution != null)
+			attribution.reset();
+	}
+
+	private void typed(long start, long address, int size, boolean ok) {
+		typed.record(start, size, ok);
+		count(address, size);
+	}
+
+	private void count(long address, int size) {
+		Attribution attribution = this.attribution;
+		if (attribution != null)
+			attribution.count(address, size);
+	}
+
+	private long count(VectoredBatch batch) {
+		long bytes = 0;
+		Attribution attribution = this.attribution;
+		for (int i = 0; i < batch.count(); i++) {
+			if (batch.succeeded(i)) {
+				bytes += batch.length(i);
+				if (attribution != null)
+					attribution.count(batch.address(i), batch.length(i));
+			}
+		}
+		return bytes;
+	}
+
+	/*
+	 * Starts counting against the modules of `index`, carrying over the counts of modules that are still there.
+	 */
+	private synchronized void attribute(RegionIndex index) {
+		Attribution previous = attribution;
+		if (index == null || previous != null && previous.index == index)
+			return;
+		Attribution next = new Attribution(index);
+		if (previous != null) {
+			Map<String, Long> operations = previous.map(previous.operations), bytes = previous.map(previous.bytes);
+			for (int i = 0; i < next.names.length; i++) {
+				Long count = operations.get(next.names[i]);
+				if (count != null) {
+					next.operations.set(i, count);
+					next.bytes.set(i, bytes.get(next.names[i]));
+				}
+			}
+		}
+		attribution = next;
+	}
+
+	private static final class Metrics {
+
+		final Operation operation;
+		final LongAdder bytes = new LongAdder();
+		final LongAdder failures = new LongAdder();
+		final LatencyHistogram latency = new LatencyHistogram();
+
+		Metrics(Operation operation) {
+			this.operation = operation;
+		}
+
+		void record(long start, long bytes, boolean ok) {
+			latency.record(System.nanoTime() - start);
+			if (ok)
+				this.bytes.add(bytes);
+			else
+				failures.increment();
+		}
+
+		OperationStats snapshot() {
+			long[] percentiles = latency.percentiles(50, 90, 99, 99.9);
+			return new OperationStats(operation.toString(), latency.count(), bytes.sum(), failures.sum(), latency.mean(),
+					percentiles[0], percentiles[1], percentiles[2], percentiles[3], latency.max());
+		}
+
+		void reset() {
+			latency.reset();
+			bytes.reset();
+			failures.reset();
+		}
+
+	}
+
+	/*
+	 * Per-module counters keyed by module position in one RegionIndex; the last slot is for addresses outside
+	 * every module.
+	 */
+	private static final class Attribution {
+
+		final RegionIndex index;
+		final String[] names;
+		final AtomicLongArray operations;
+		final AtomicLongArray bytes;
+
+		Attribution(RegionIndex index) {
+			this.index = index;
+			int count = index.moduleCount();
+			names = new String[count + 1];
+			for (int i = 0; i < count; i++) {
+				names[i] = index.module(i).name();
+			}
+			names[count] = OTHER;
+			operations = new AtomicLongArray(count + 1);
+			bytes = new AtomicLongArray(count + 1);
+		}
+
+		void count(long address, int size) {
+			int module = index.moduleIndexOf(address);
+			if (module < 0)
+				module = names.length - 1;
+			operations.incrementAndGet(module);
+			bytes.addAndGet(module, size);
+		}
+
+		Map<String, Long> map(AtomicLongArray counters) {
+			Map<String, Long> map = new LinkedHashMap<>();
+			for (int i = 0; i < names.length; i++) {
+				map.merge(names[i], counters.get(i), Long::sum);
+			}
+			return map;
+		}
+
+		void reset() {
+			for (int i = 0; i < names.length; i++) {
+				operations.set(i, 0);
+				bytes.set(i, 0);
+			}
+		}
+
+	}
+
+}
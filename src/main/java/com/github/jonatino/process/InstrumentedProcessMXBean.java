@@ -0,0 +1,51 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link InstrumentedProcess}, see {@link InstrumentedProcess#register()}.
+ */
+public interface InstrumentedProcessMXBean {
+
+	int getPid();
+
+	String getBackend();
+
+	OperationStats getTypedReads();
+
+	OperationStats getBulkReads();
+
+	OperationStats getWrites();
+
+	OperationStats getCanReads();
+
+	OperationStats getInitModules();
+
+	/**
+	 * Reads and writes per module name; those outside any module are counted under {@code [other]}.
+	 */
+	Map<String, Long> getModuleOperations();
+
+	Map<String, Long> getModuleBytes();
+
+	String getDump();
+
+	void resetStats();
+
+}
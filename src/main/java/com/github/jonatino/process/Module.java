@@ -97,7 +97,15 @@ public class Module implements DataSource {
 	}
 
 	public MemoryBuffer data(boolean forceNew) {
-		return data == null || forceNew ? data = process().read(pointer(), size()) : data;
+		MemoryBuffer data = this.data;
+		if (data == null || forceNew) {
+			// its own memory, as a scratch buffer would be taken over by the next read of a similar size
+			if (data == null)
+				data = new MemoryBuffer(size());
+			process().read(start(), size(), Pointer.nativeValue(data));
+			this.data = data;
+		}
+		return data;
 	}
 
 	@Override
@@ -120,6 +128,41 @@ public class Module implements DataSource {
 		process().read(address, size, target);
 	}
 
+	@Override
+	public ReadBatch read(ReadBatch batch) {
+		return process().read(batch);
+	}
+
+	@Override
+	public byte[] readBytes(long address, byte[] dst, int off, int len) {
+		return process().readBytes(address, dst, off, len);
+	}
+
+	@Override
+	public int[] readInts(long address, int[] dst, int off, int len) {
+		return process().readInts(address, dst, off, len);
+	}
+
+	@Override
+	public long[] readLongs(long address, long[] dst, int off, int len) {
+		return process().readLongs(address, dst, off, len);
+	}
+
+	@Override
+	public float[] readFloats(long address, float[] dst, int off, int len) {
+		return process().readFloats(address, dst, off, len);
+	}
+
+	@Override
+	public double[] readDoubles(long address, double[] dst, int off, int len) {
+		return process().readDoubles(address, dst, off, len);
+	}
+
+	@Override
+	public WriteBatch write(WriteBatch batch) {
+		return process().write(batch);
+	}
+
 	@Override
 	public Process write(Pointer address, MemoryBuffer buffer) {
 		return process().write(address, buffer);
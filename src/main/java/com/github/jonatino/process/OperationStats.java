@@ -0,0 +1,99 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * What an {@link InstrumentedProcess} recorded for one kind of operation. Latencies are in nanoseconds and
+ * percentiles are rounded up to the histogram bucket they fall in.
+ */
+public final class OperationStats {
+
+	private final String operation;
+	private final long count;
+	private final long bytes;
+	private final long failures;
+	private final double meanNanos;
+	private final long p50Nanos;
+	private final long p90Nanos;
+	private final long p99Nanos;
+	private final long p999Nanos;
+	private final long maxNanos;
+
+	@ConstructorProperties({"operation", "count", "bytes", "failures", "meanNanos", "p50Nanos", "p90Nanos", "p99Nanos", "p999Nanos", "maxNanos"})
+	public OperationStats(String operation, long count, long bytes, long failures, double meanNanos,
+	                      long p50Nanos, long p90Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+		this.operation = operation;
+		this.count = count;
+		this.bytes = bytes;
+		this.failures = failures;
+		this.meanNanos = meanNanos;
+		this.p50Nanos = p50Nanos;
+		this.p90Nanos = p90Nanos;
+		this.p99Nanos = p99Nanos;
+		this.p999Nanos = p999Nanos;
+		this.maxNanos = maxNanos;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public long getFailures() {
+		return failures;
+	}
+
+	public double getMeanNanos() {
+		return meanNanos;
+	}
+
+	public long getP50Nanos() {
+		return p50Nanos;
+	}
+
+	public long getP90Nanos() {
+		return p90Nanos;
+	}
+
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+	public long getP999Nanos() {
+		return p999Nanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%-12s %12d %14d %9d %10.0f %9d %9d %9d %9d %10d",
+				operation, count, bytes, failures, meanNanos, p50Nanos, p90Nanos, p99Nanos, p999Nanos, maxNanos);
+	}
+
+}
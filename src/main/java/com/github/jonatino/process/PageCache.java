@@ -0,0 +1,456 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import com.github.jonatino.misc.Cacheable;
+import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.misc.Unsafes;
+import com.sun.jna.Pointer;
+import sun.misc.Unsafe;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-through cache in front of a {@link Process}. Reads are served from page-aligned off-heap cache lines; the
+ * pages a read is missing are fetched with a single vectored {@link ReadBatch}, whatever their number.
+ * <p>
+ * A cached page stays valid until {@link #advanceEpoch()} is called (typically once per tick), or until the TTL of
+ * the range it falls in runs out. Once the memory budget is used up, lines are recycled with the CLOCK algorithm.
+ * Writes go straight to the process and drop the pages they touch. The typed reads don't allocate on a hit.
+ */
+public final class PageCache implements DataSource {
+
+	public static final int PAGE_SIZE = 4096;
+
+	private static final int PAGE_SHIFT = 12;
+	private static final long NO_PAGE = -1;
+
+	private static final Unsafe unsafe = Unsafes.UNSAFE;
+
+	private final Process process;
+	private final int lines;
+	private final MemoryBuffer storage;
+	private final long base;
+
+	// per line
+	private final long[] page;
+	private final long[] epochOf;
+	private final long[] expires;
+	private final boolean[] referenced;
+	private final long[] pinned;
+
+	// page -> line + 1, open addressing with linear probing
+	private final int[] index;
+	private final int mask;
+
+	private final ReadBatch fill = new ReadBatch();
+	private int[] missing = new int[16];
+
+	private long[] ttlStart = new long[0];
+	private long[] ttlEnd = new long[0];
+	private long[] ttlNanos = new long[0];
+	private long defaultTtl = Long.MAX_VALUE;
+
+	private long epoch;
+	private long request;
+	private int used;
+	private int hand;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long fills;
+
+	/**
+	 * @param budget the most off-heap memory the cache lines may take, in bytes
+	 */
+	public PageCache(Process process, long budget) {
+		long lines = budget / PAGE_SIZE;
+		if (lines < 1 || lines * PAGE_SIZE > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Budget must be between " + PAGE_SIZE + " and " + Integer.MAX_VALUE + " bytes, got " + budget);
+		}
+		this.process = process;
+		this.lines = (int) lines;
+		this.storage = new MemoryBuffer(this.lines * PAGE_SIZE);
+		this.base = Pointer.nativeValue(storage);
+		this.page = new long[this.lines];
+		this.epochOf = new long[this.lines];
+		this.expires = new long[this.lines];
+		this.referenced = new boolean[this.lines];
+		this.pinned = new long[this.lines];
+		this.index = new int[Integer.highestOneBit(this.lines) << 2];
+		this.mask = index.length - 1;
+		Arrays.fill(page, NO_PAGE);
+	}
+
+	public Process process() {
+		return process;
+	}
+
+	/**
+	 * Invalidates every cached page at once.
+	 */
+	public synchronized long advanceEpoch() {
+		return ++epoch;
+	}
+
+	public synchronized long epoch() {
+		return epoch;
+	}
+
+	/**
+	 * Makes pages filled from now on expire after {@code duration} even if the epoch doesn't move. Applies to pages
+	 * outside every range given to {@link #ttl(long, long, long, TimeUnit)}.
+	 */
+	public synchronized PageCache ttl(long duration, TimeUnit unit) {
+		defaultTtl = unit.toNanos(duration);
+		return this;
+	}
+
+	/**
+	 * Gives pages in [start, end) their own time to live, e.g. a short one for a hot data segment and none for
+	 * code. Later ranges win where they overlap earlier ones.
+	 */
+	public synchronized PageCache ttl(long start, long end, long duration, TimeUnit unit) {
+		int n = ttlStart.length;
+		ttlStart = Arrays.copyOf(ttlStart, n + 1);
+		ttlEnd = Arrays.copyOf(ttlEnd, n + 1);
+		ttlNanos = Arrays.copyOf(ttlNanos, n + 1);
+		ttlStart[n] = start;
+		ttlEnd[n] = end;
+		ttlNanos[n] = unit.toNanos(duration);
+		return this;
+	}
+
+	public synchronized void invalidate(long address, int size) {
+		if (size <= 0)
+			return;
+		for (long p = address >>> PAGE_SHIFT, last = (address + size - 1) >>> PAGE_SHIFT; p <= last; p++) {
+			int line = lookup(p);
+			if (line >= 0)
+				epochOf[line] = epoch - 1;
+		}
+	}
+
+	@Override
+	public MemoryBuffer read(long address, int size) {
+		MemoryBuffer buffer = Cacheable.buffer(size);
+		read(address, size, Pointer.nativeValue(buffer));
+		return buffer;
+	}
+
+	@Override
+	public synchronized void read(long address, int size, long target) {
+		if (size <= 0)
+			return;
+		long first = address >>> PAGE_SHIFT, last = (address + size - 1) >>> PAGE_SHIFT;
+		int pages = (int) (last - first + 1);
+		if (last - first >= lines) {
+			misses += pages;
+			process.read(address, size, target);
+			return;
+		}
+
+		long now = System.nanoTime();
+		long request = ++this.request;
+		int missed = 0;
+		for (int i = 0; i < pages; i++) {
+			int line = lookup(first + i);
+			if (line >= 0 && valid(line, now)) {
+				referenced[line] = true;
+				pinned[line] = request;
+			} else {
+				if (missed == missing.length)
+					missing = Arrays.copyOf(missing, missed << 1);
+				missing[missed++] = i;
+			}
+		}
+		hits += pages - missed;
+
+		if (missed > 0) {
+			misses += missed;
+			fill(first, missed, request, now);
+		}
+
+		long position = address;
+		long end = address + size;
+		while (position < end) {
+			int line = lookup(position >>> PAGE_SHIFT);
+			int offset = (int) (position & (PAGE_SIZE - 1));
+			int length = (int) Math.min(PAGE_SIZE - offset, end - position);
+			unsafe.copyMemory(base + ((long) line << PAGE_SHIFT) + offset, target + (position - address), length);
+			position += length;
+		}
+	}
+
+	@Override
+	public Process write(Pointer address, MemoryBuffer buffer) {
+		long at = Pointer.nativeValue(address);
+		Process result = process.write(address, buffer);
+		invalidate(at, buffer.size());
+		return result;
+	}
+
+	@Override
+	public WriteBatch write(WriteBatch batch) {
+		process.write(batch);
+		for (int i = 0; i < batch.count(); i++) {
+			invalidate(batch.address(i), batch.length(i));
+		}
+		return batch;
+	}
+
+	@Override
+	public boolean canRead(Pointer address, int size) {
+		return process.canRead(address, size);
+	}
+
+	@Override
+	public synchronized int readByte(long address) {
+		long at = hit(address, 1);
+		return at != 0 ? unsafe.getByte(at) : DataSource.super.readByte(address);
+	}
+
+	@Override
+	public boolean readBoolean(long address) {
+		return readByte(address) != 0;
+	}
+
+	@Override
+	public synchronized int readShort(long address) {
+		long at = hit(address, 2);
+		return at != 0 ? unsafe.getShort(at) : DataSource.super.readShort(address);
+	}
+
+	@Override
+	public synchronized int readInt(long address) {
+		long at = hit(address, 4);
+		return at != 0 ? unsafe.getInt(at) : DataSource.super.readInt(address);
+	}
+
+	@Override
+	public long readUnsignedInt(long address) {
+		return Integer.toUnsignedLong(readInt(address));
+	}
+
+	@Override
+	public synchronized long readLong(long address) {
+		long at = hit(address, 8);
+		return at != 0 ? unsafe.getLong(at) : DataSource.super.readLong(address);
+	}
+
+	@Override
+	public synchronized float readFloat(long address) {
+		long at = hit(address, 4);
+		return at != 0 ? unsafe.getFloat(at) : DataSource.super.readFloat(address);
+	}
+
+	@Override
+	public synchronized double readDouble(long address) {
+		long at = hit(address, 8);
+		return at != 0 ? unsafe.getDouble(at) : DataSource.super.readDouble(address);
+	}
+
+	@Override
+	public long readPointer(long address) {
+		return readLong(address);
+	}
+
+	public synchronized long hits() {
+		return hits;
+	}
+
+	public synchronized long misses() {
+		return misses;
+	}
+
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	/**
+	 * Number of vectored reads issued to fill missing pages.
+	 */
+	public synchronized long fills() {
+		return fills;
+	}
+
+	public synchronized double hitRatio() {
+		long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	public synchronized void resetStats() {
+		hits = misses = evictions = fills = 0;
+	}
+
+	public int capacity() {
+		return lines;
+	}
+
+	public synchronized int size() {
+		return used;
+	}
+
+	public synchronized void free() {
+		storage.free();
+		fill.free();
+	}
+
+	@Override
+	public String toString() {
+		return "PageCache{process=" + process.id() + ", lines=" + used + "/" + lines + ", hits=" + hits + ", misses=" + misses + '}';
+	}
+
+	/*
+	 * The native address of `size` bytes at `address` when they sit in one valid line, 0 otherwise.
+	 */
+	private long hit(long address, int size) {
+		int offset = (int) (address & (PAGE_SIZE - 1));
+		if (offset + size > PAGE_SIZE)
+			return 0;
+		int line = lookup(address >>> PAGE_SHIFT);
+		if (line < 0 || !valid(line, expires[line] == Long.MAX_VALUE ? 0 : System.nanoTime()))
+			return 0;
+		hits++;
+		referenced[line] = true;
+		return base + ((long) line << PAGE_SHIFT) + offset;
+	}
+
+	private boolean valid(int line, long now) {
+		return epochOf[line] == epoch && (expires[line] == Long.MAX_VALUE || now - expires[line] < 0);
+	}
+
+	private void fill(long first, int missed, long request, long now) {
+		fill.clear();
+		for (int i = 0; i < missed; i++) {
+			long p = first + missing[i];
+			int line = lookup(p);
+			if (line < 0) {
+				line = allocate(request);
+				bind(line, p);
+			}
+			pinned[line] = request;
+			fill.add(p << PAGE_SHIFT, PAGE_SIZE, base + ((long) line << PAGE_SHIFT));
+		}
+		fills++;
+		process.read(fill);
+
+		long failed = NO_PAGE;
+		for (int i = 0; i < missed; i++) {
+			int line = lookup(first + missing[i]);
+			if (fill.succeeded(i)) {
+				epochOf[line] = epoch;
+				referenced[line] = true;
+				long ttl = ttl((first + missing[i]) << PAGE_SHIFT);
+				expires[line] = ttl == Long.MAX_VALUE ? Long.MAX_VALUE : now + ttl;
+			} else {
+				release(line);
+				if (failed == NO_PAGE)
+					failed = first + missing[i];
+			}
+		}
+		if (failed != NO_PAGE) {
+			throw new RuntimeException("Read memory failed at address " + Module.hex(failed << PAGE_SHIFT) + " size " + PAGE_SIZE);
+		}
+	}
+
+	private long ttl(long address) {
+		for (int i = ttlStart.length - 1; i >= 0; i--) {
+			if (address >= ttlStart[i] && address < ttlEnd[i])
+				return ttlNanos[i];
+		}
+		return defaultTtl;
+	}
+
+	/*
+	 * Hands out a free line while there are any, then sweeps the clock hand past referenced lines, clearing their
+	 * bit, until it finds one that wasn't touched since the last sweep. Lines used by the current read are skipped.
+	 */
+	private int allocate(long request) {
+		if (used < lines) {
+			for (int i = 0; i < lines; i++) {
+				int line = (hand + i) % lines;
+				if (page[line] == NO_PAGE) {
+					hand = (line + 1) % lines;
+					return line;
+				}
+			}
+		}
+		while (true) {
+			int line = hand;
+			hand = (hand + 1) % lines;
+			if (pinned[line] == request)
+				continue;
+			if (referenced[line] && epochOf[line] == epoch) {
+				referenced[line] = false;
+				continue;
+			}
+			release(line);
+			evictions++;
+			return line;
+		}
+	}
+
+	private int lookup(long page) {
+		for (int slot = slot(page); ; slot = (slot + 1) & mask) {
+			int entry = index[slot];
+			if (entry == 0)
+				return -1;
+			if (this.page[entry - 1] == page)
+				return entry - 1;
+		}
+	}
+
+	private void bind(int line, long page) {
+		int slot = slot(page);
+		while (index[slot] != 0)
+			slot = (slot + 1) & mask;
+		index[slot] = line + 1;
+		this.page[line] = page;
+		used++;
+	}
+
+	private void release(int line) {
+		long page = this.page[line];
+		if (page == NO_PAGE)
+			return;
+		int slot = slot(page);
+		while (index[slot] != line + 1)
+			slot = (slot + 1) & mask;
+		// backward shift deletion keeps probe sequences intact without tombstones
+		int hole = slot;
+		for (slot = (slot + 1) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+			int home = slot(this.page[index[slot] - 1]);
+			if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+				index[hole] = index[slot];
+				hole = slot;
+			}
+		}
+		index[hole] = 0;
+		this.page[line] = NO_PAGE;
+		referenced[line] = false;
+		used--;
+	}
+
+	private int slot(long page) {
+		long h = page * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+}
@@ -0,0 +1,240 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.sun.jna.Pointer;
+import net.openhft.hashing.LongHashFunction;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Tracks which pages of a memory range change between two points in time.
+ * <p>
+ * Every {@link #capture()} reads the range page by page into off-heap storage, with one vectored read per
+ * {@link ReadBatch#IOV_MAX} pages, and fingerprints each page with xxHash. Pages whose fingerprint differs from
+ * the previous capture (or that became readable or unreadable) are reported as changed; the bytes that actually
+ * differ can then be walked with {@link #deltas(DeltaConsumer)}. Two copies of the range are kept and swapped, so
+ * repeated captures create no garbage. Not thread safe.
+ */
+public final class PageSnapshot {
+
+	public static final int PAGE_SIZE = 4096;
+
+	private static final LongHashFunction HASH = LongHashFunction.xx();
+
+	private final DataSource source;
+	private final long start;
+	private final int pages;
+
+	private MemoryBuffer current;
+	private MemoryBuffer previous;
+	private ReadBatch currentBatch;
+	private ReadBatch previousBatch;
+	private long[] currentHash;
+	private long[] previousHash;
+	private int captures;
+
+	private int[] changed;
+	private int changedCount;
+
+	public PageSnapshot(DataSource source, long start, long size) {
+		long first = start & -PAGE_SIZE;
+		long pages = (start + size - first + PAGE_SIZE - 1) / PAGE_SIZE;
+		if (pages * PAGE_SIZE > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Snapshots are limited to " + (Integer.MAX_VALUE / PAGE_SIZE) + " pages, got " + pages);
+		}
+		this.source = source;
+		this.start = first;
+		this.pages = (int) pages;
+		this.current = new MemoryBuffer(this.pages * PAGE_SIZE);
+		this.previous = new MemoryBuffer(this.pages * PAGE_SIZE);
+		this.currentBatch = batch(current);
+		this.previousBatch = batch(previous);
+		this.currentHash = new long[this.pages];
+		this.previousHash = new long[this.pages];
+		this.changed = new int[Math.min(this.pages, 64)];
+	}
+
+	public static PageSnapshot of(Process process, RegionTable regions, int region) {
+		return new PageSnapshot(process, regions.start(region), regions.size(region));
+	}
+
+	public long start() {
+		return start;
+	}
+
+	public long end() {
+		return start + (long) pages * PAGE_SIZE;
+	}
+
+	public int pages() {
+		return pages;
+	}
+
+	public int captures() {
+		return captures;
+	}
+
+	/**
+	 * Reads the whole range again and works out which pages changed since the previous capture. The first
+	 * capture reports every readable page as changed.
+	 */
+	public PageSnapshot capture() {
+		swap();
+		source.read(currentBatch);
+		changedCount = 0;
+		for (int page = 0; page < pages; page++) {
+			boolean readable = currentBatch.succeeded(page);
+			currentHash[page] = readable ? HASH.hashMemory(Pointer.nativeValue(current) + (long) page * PAGE_SIZE, PAGE_SIZE) : 0;
+			boolean wasReadable = captures > 0 && previousBatch.succeeded(page);
+			if (readable != wasReadable || (readable && currentHash[page] != previousHash[page])) {
+				if (changedCount == changed.length) {
+					int[] grown = new int[Math.min(pages, changedCount << 1)];
+					System.arraycopy(changed, 0, grown, 0, changedCount);
+					changed = grown;
+				}
+				changed[changedCount++] = page;
+			}
+		}
+		captures++;
+		return this;
+	}
+
+	public boolean isReadable(int page) {
+		return captures > 0 && currentBatch.succeeded(page);
+	}
+
+	public long hash(int page) {
+		return currentHash[page];
+	}
+
+	public long address(int page) {
+		return start + (long) page * PAGE_SIZE;
+	}
+
+	public int changedPages() {
+		return changedCount;
+	}
+
+	public int changedPage(int index) {
+		return changed[index];
+	}
+
+	public boolean isChanged(int page) {
+		int low = 0, high = changedCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (changed[mid] < page)
+				low = mid + 1;
+			else if (changed[mid] > page)
+				high = mid - 1;
+			else
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Calls {@code consumer} once per run of consecutive changed pages, with the address range they cover.
+	 */
+	public void changedRanges(RangeConsumer consumer) {
+		for (int i = 0; i < changedCount; ) {
+			int first = changed[i], last = first;
+			while (++i < changedCount && changed[i] == last + 1)
+				last = changed[i];
+			consumer.accept(address(first), address(last + 1));
+		}
+	}
+
+	/**
+	 * Walks the bytes that differ between the last two captures, one call per run of differing bytes inside the
+	 * changed pages. Pages that were unreadable on either side are reported whole.
+	 */
+	public void deltas(DeltaConsumer consumer) {
+		for (int i = 0; i < changedCount; i++) {
+			deltas(changed[i], consumer);
+		}
+	}
+
+	public void deltas(int page, DeltaConsumer consumer) {
+		int base = page * PAGE_SIZE;
+		ByteBuffer now = current.getByteBuffer(base, PAGE_SIZE);
+		ByteBuffer before = previous.getByteBuffer(base, PAGE_SIZE);
+		if (captures < 2 || !currentBatch.succeeded(page) || !previousBatch.succeeded(page)) {
+			consumer.accept(address(page), PAGE_SIZE, before, now, 0);
+			return;
+		}
+		for (int i = 0; i < PAGE_SIZE; ) {
+			if ((i & 7) == 0 && now.getLong(i) == before.getLong(i)) {
+				i += 8;
+			} else if (now.get(i) == before.get(i)) {
+				i++;
+			} else {
+				int run = i;
+				while (i < PAGE_SIZE && now.get(i) != before.get(i))
+					i++;
+				consumer.accept(address(page) + run, i - run, before, now, run);
+			}
+		}
+	}
+
+	public void free() {
+		current.free();
+		previous.free();
+		currentBatch.free();
+		previousBatch.free();
+	}
+
+	private ReadBatch batch(MemoryBuffer target) {
+		ReadBatch batch = new ReadBatch(pages);
+		for (int page = 0; page < pages; page++) {
+			batch.add(address(page), PAGE_SIZE, target, page * PAGE_SIZE);
+		}
+		return batch;
+	}
+
+	private void swap() {
+		MemoryBuffer buffer = current;
+		current = previous;
+		previous = buffer;
+		ReadBatch batch = currentBatch;
+		currentBatch = previousBatch;
+		previousBatch = batch;
+		long[] hash = currentHash;
+		currentHash = previousHash;
+		previousHash = hash;
+	}
+
+	public interface RangeConsumer {
+
+		void accept(long start, long end);
+
+	}
+
+	public interface DeltaConsumer {
+
+		/**
+		 * @param previous the page as of the previous capture
+		 * @param current  the page as of the last capture
+		 * @param offset   where the run starts in both buffers
+		 */
+		void accept(long address, int length, ByteBuffer previous, ByteBuffer current, int offset);
+
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * A multi-level pointer such as {@code readPointer(readPointer(module.start() + a) + b) + c}, written as
+ * {@code PointerChain.of("module", a, b, c)}. Every offset but the first is applied after dereferencing the
+ * address built so far; the result is the final address, not the value stored there.
+ * <p>
+ * Resolve single chains with {@link #resolve(Process)}, or register many of them with a {@link PointerResolver}
+ * so shared prefixes are read once and every level costs one vectored read.
+ */
+public final class PointerChain {
+
+	/**
+	 * Returned for a chain that doesn't resolve, and by {@link SignatureScanner#find} for a signature that isn't
+	 * found. No mapping can start at -1.
+	 */
+	public static final long INVALID = -1;
+
+	private final String module;
+	private final long base;
+	private final long[] offsets;
+
+	private PointerChain(String module, long base, long[] offsets) {
+		this.module = module;
+		this.base = base;
+		this.offsets = offsets;
+	}
+
+	public static PointerChain of(long address, long... offsets) {
+		return new PointerChain(null, address, offsets.clone());
+	}
+
+	public static PointerChain of(String module, long offset, long... offsets) {
+		if (module == null) {
+			throw new IllegalArgumentException("Module name must not be null, use of(long, long...) for absolute chains");
+		}
+		return new PointerChain(module, offset, offsets.clone());
+	}
+
+	public String module() {
+		return module;
+	}
+
+	public long base() {
+		return base;
+	}
+
+	public int depth() {
+		return offsets.length;
+	}
+
+	public long offset(int level) {
+		return offsets[level];
+	}
+
+	/**
+	 * Walks the chain one read per level and returns {@link #INVALID} instead of throwing when the module is
+	 * missing or a hop doesn't point into readable memory.
+	 */
+	public long resolve(Process process) {
+		LongPredicate valid = validator(process);
+		long address = base;
+		if (module != null) {
+			Module m = process.getModule(module);
+			if (m == null)
+				return INVALID;
+			address += m.start();
+		}
+		for (long offset : offsets) {
+			if (!valid.test(address))
+				return INVALID;
+			try {
+				address = process.readPointer(address) + offset;
+			} catch (RuntimeException e) {
+				return INVALID;
+			}
+		}
+		return valid.test(address) ? address : INVALID;
+	}
+
+	/*
+	 * Checks hops against the readable mappings where the process can list them, and for plausibility otherwise.
+	 */
+	static LongPredicate validator(Process process) {
+		if (!process.hasRegions())
+			return PointerChain::isPlausible;
+		// memory mapped since the index was built isn't in it yet, so a miss looks again in a fresh one
+		return address -> address >= 0x10000 && (process.regionIndex().isReadable(address) || process.refreshRegionIndex().isReadable(address));
+	}
+
+	/*
+	 * Cheap sanity check for a hop when the mappings aren't known: above the usual mmap_min_addr and inside the
+	 * 47 bit user address space.
+	 */
+	public static boolean isPlausible(long address) {
+		return address >= 0x10000 && address < 0x800000000000L;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof PointerChain))
+			return false;
+		PointerChain that = (PointerChain) o;
+		return base == that.base && (module == null ? that.module == null : module.equals(that.module)) && Arrays.equals(offsets, that.offsets);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * (module == null ? 0 : module.hashCode()) + Long.hashCode(base)) + Arrays.hashCode(offsets);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("PointerChain{");
+		sb.append(module == null ? Module.hex(base) : module + "+" + Module.hex(base));
+		for (long offset : offsets) {
+			sb.append(" -> +").append(Module.hex(offset));
+		}
+		return sb.append('}').toString();
+	}
+
+}
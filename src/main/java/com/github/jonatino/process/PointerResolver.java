@@ -0,0 +1,214 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.sun.jna.Pointer;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * Resolves a set of {@link PointerChain}s together. The chains are compiled into a prefix tree, so hops shared
+ * by several chains are read once, and every level of the tree is fetched with a single {@link ReadBatch}.
+ * <p>
+ * Resolved hops are kept until {@link #advanceEpoch()} is called; calling {@link #resolve()} again in the same
+ * epoch only reads hops of chains added since. A failed hop marks the chains below it unresolved instead of
+ * throwing. Not thread safe.
+ */
+public final class PointerResolver {
+
+	private static final int NONE = -1;
+
+	private final Process process;
+	private LongPredicate validator;
+
+	// prefix tree, one node per distinct (parent, offset) hop
+	private int nodes;
+	private int[] parent = new int[16];
+	private int[] firstChild = new int[16];
+	private int[] nextSibling = new int[16];
+	private int[] depth = new int[16];
+	private long[] offset = new long[16];
+	private String[] module = new String[16];
+	private long[] address = new long[16];
+	private boolean[] valid = new boolean[16];
+	private long[] resolvedEpoch = new long[16];
+	private long[] deref = new long[16];
+	private boolean[] derefValid = new boolean[16];
+	private long[] derefEpoch = new long[16];
+	private int maxDepth;
+
+	private int chains;
+	private int[] leaf = new int[16];
+
+	private final ReadBatch batch = new ReadBatch();
+	private MemoryBuffer values = new MemoryBuffer(16 * 8);
+	private long epoch = 1;
+
+	public PointerResolver(Process process) {
+		this.process = process;
+		this.validator = PointerChain.validator(process);
+	}
+
+	/**
+	 * Decides which dereferenced values count as pointers. By default they must point into a readable mapping of
+	 * the process, or pass {@link PointerChain#isPlausible(long)} when it can't list its mappings.
+	 */
+	public PointerResolver validator(LongPredicate validator) {
+		this.validator = validator;
+		return this;
+	}
+
+	public int add(PointerChain chain) {
+		int node = root(chain.module(), chain.base());
+		for (int level = 0; level < chain.depth(); level++) {
+			node = child(node, chain.offset(level));
+		}
+		if (chains == leaf.length) {
+			leaf = Arrays.copyOf(leaf, chains << 1);
+		}
+		leaf[chains] = node;
+		return chains++;
+	}
+
+	public int chains() {
+		return chains;
+	}
+
+	public long epoch() {
+		return epoch;
+	}
+
+	public void advanceEpoch() {
+		epoch++;
+	}
+
+	public boolean resolved(int chain) {
+		int node = leaf[chain];
+		return resolvedEpoch[node] == epoch && valid[node];
+	}
+
+	public long address(int chain) {
+		return resolved(chain) ? address[leaf[chain]] : PointerChain.INVALID;
+	}
+
+	public PointerResolver resolve() {
+		for (int n = 0; n < nodes; n++) {
+			if (parent[n] == NONE && resolvedEpoch[n] != epoch) {
+				long base = offset[n];
+				boolean ok = true;
+				if (module[n] != null) {
+					Module m = process.getModule(module[n]);
+					ok = m != null;
+					base += ok ? m.start() : 0;
+				}
+				settle(n, base, ok);
+			}
+		}
+		for (int level = 1; level <= maxDepth; level++) {
+			batch.clear();
+			for (int n = 0; n < nodes; n++) {
+				if (depth[n] != level || resolvedEpoch[n] == epoch)
+					continue;
+				int p = parent[n];
+				if (valid[p] && derefEpoch[p] != epoch) {
+					derefEpoch[p] = epoch;
+					batch.add(address[p], 8, values, p * 8);
+				}
+			}
+			if (batch.count() > 0) {
+				process.read(batch);
+				for (int i = 0; i < batch.count(); i++) {
+					int p = (int) ((batch.target(i) - Pointer.nativeValue(values)) >> 3);
+					derefValid[p] = batch.succeeded(i);
+					deref[p] = values.getLong(p * 8L);
+				}
+			}
+			for (int n = 0; n < nodes; n++) {
+				if (depth[n] != level || resolvedEpoch[n] == epoch)
+					continue;
+				int p = parent[n];
+				boolean ok = valid[p] && derefValid[p];
+				settle(n, ok ? deref[p] + offset[n] : PointerChain.INVALID, ok);
+			}
+		}
+		return this;
+	}
+
+	public void free() {
+		batch.free();
+		values.free();
+	}
+
+	private void settle(int node, long address, boolean ok) {
+		this.address[node] = address;
+		this.valid[node] = ok && validator.test(address);
+		this.resolvedEpoch[node] = epoch;
+	}
+
+	private int root(String name, long base) {
+		for (int n = 0; n < nodes; n++) {
+			if (parent[n] == NONE && offset[n] == base && (name == null ? module[n] == null : name.equals(module[n])))
+				return n;
+		}
+		int n = node(NONE, base, 0);
+		module[n] = name;
+		return n;
+	}
+
+	private int child(int of, long offset) {
+		for (int n = firstChild[of]; n != NONE; n = nextSibling[n]) {
+			if (this.offset[n] == offset)
+				return n;
+		}
+		int n = node(of, offset, depth[of] + 1);
+		nextSibling[n] = firstChild[of];
+		firstChild[of] = n;
+		return n;
+	}
+
+	private int node(int parent, long offset, int depth) {
+		if (nodes == this.parent.length) {
+			int capacity = nodes << 1;
+			this.parent = Arrays.copyOf(this.parent, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			nextSibling = Arrays.copyOf(nextSibling, capacity);
+			this.depth = Arrays.copyOf(this.depth, capacity);
+			this.offset = Arrays.copyOf(this.offset, capacity);
+			module = Arrays.copyOf(module, capacity);
+			address = Arrays.copyOf(address, capacity);
+			valid = Arrays.copyOf(valid, capacity);
+			resolvedEpoch = Arrays.copyOf(resolvedEpoch, capacity);
+			deref = Arrays.copyOf(deref, capacity);
+			derefValid = Arrays.copyOf(derefValid, capacity);
+			derefEpoch = Arrays.copyOf(derefEpoch, capacity);
+			MemoryBuffer grown = new MemoryBuffer(capacity * 8);
+			values.free();
+			values = grown;
+		}
+		int n = nodes++;
+		this.parent[n] = parent;
+		this.firstChild[n] = NONE;
+		this.nextSibling[n] = NONE;
+		this.depth[n] = depth;
+		this.offset[n] = offset;
+		maxDepth = Math.max(maxDepth, depth);
+		return n;
+	}
+
+}
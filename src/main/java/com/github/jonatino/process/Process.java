@@ -16,10 +16,12 @@
 
 package com.github.jonatino.process;
 
+import java.util.Collections;
+
 /**
  * Created by Jonathan on 12/12/15.
  */
-public interface Process extends DataSource {
+public interface Process extends DataSource, AutoCloseable {
 
 	int id();
 
@@ -29,4 +31,51 @@ public interface Process extends DataSource {
 
 	Module findModule(String moduleName);
 
+	/**
+	 * Releases what the backend keeps open for the process, such as a file descriptor. The process can't be used
+	 * afterwards. Backends that hold nothing open do nothing.
+	 */
+	@Override
+	default void close() {
+	}
+
+	/**
+	 * Opens a scope whose buffers come from a bump allocator instead of thread-local caches, for readers that run
+	 * on virtual threads or are otherwise not tied to one thread. Close it when done.
+	 */
+	default ReadScope scope() {
+		return new ReadScope(this);
+	}
+
+	/**
+	 * Whether the backend can list the memory mappings of the process, which {@link #regions()},
+	 * {@link #regionIndex()} and {@link #refreshRegionIndex()} need.
+	 */
+	default boolean hasRegions() {
+		return false;
+	}
+
+	/**
+	 * A fresh snapshot of the memory mappings of the process.
+	 *
+	 * @throws UnsupportedOperationException unless {@link #hasRegions()}
+	 */
+	default RegionTable regions() {
+		throw new UnsupportedOperationException("Memory regions are not available for " + getClass().getSimpleName());
+	}
+
+	/**
+	 * The last index built by {@link #refreshRegionIndex()}, building one if there is none yet.
+	 */
+	default RegionIndex regionIndex() {
+		return refreshRegionIndex();
+	}
+
+	/**
+	 * Rereads the mappings and swaps in a new {@link RegionIndex} if they changed.
+	 */
+	default RegionIndex refreshRegionIndex() {
+		return new RegionIndex(regions(), Collections.emptyList());
+	}
+
 }
\ No newline at end of file
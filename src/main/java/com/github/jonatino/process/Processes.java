@@ -30,6 +30,8 @@ import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.Tlhelp32;
 import com.sun.jna.ptr.IntByReference;
 
+import java.lang.reflect.InvocationTargetException;
+
 /**
  * Created by Jonathan on 7/19/2016.
  */
@@ -76,12 +78,37 @@ public final class Processes {
 			}
 			return new MacProcess(id, out.getValue());
 		} else if (Platform.isLinux()) {
-			return new UnixProcessC(id);
+			Process foreign = foreign(id);
+			return foreign != null ? foreign : new UnixProcessC(id);
 		} else {
 			throw new IllegalStateException("Process " + id + " was not found. Are you sure its running?");
 		}
 	}
 
+	/*
+	 * The java.lang.foreign backend only ships in the JDK 22 part of the multi-release jar, and needs no native library.
+	 */
+	private static Process foreign(int id) {
+		Class<?> type;
+		try {
+			type = Class.forName("com.github.jonatino.process.impl.unix.ForeignProcess");
+		} catch (ClassNotFoundException | UnsupportedClassVersionError e) {
+			return null;
+		}
+		try {
+			return (Process) type.getConstructor(int.class).newInstance(id);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException("Failed to open process " + id, cause);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Failed to construct ForeignProcess", e);
+		}
+	}
+
 	private static boolean isSudo() {
 		return libc.getuid() == 0;
 	}
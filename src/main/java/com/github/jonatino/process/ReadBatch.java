@@ -0,0 +1,66 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.sun.jna.Pointer;
+
+/**
+ * A reusable list of (address, size, destination) reads that a {@link DataSource} can service with one
+ * vectored call per {@link #IOV_MAX} entries instead of one call per entry.
+ * <p>
+ * Build the batch once and call {@link #execute(DataSource)} every tick; as long as the entries don't change
+ * no garbage is created. A batch is not thread safe.
+ */
+public final class ReadBatch extends VectoredBatch {
+
+	public ReadBatch() {
+		this(16);
+	}
+
+	public ReadBatch(int capacity) {
+		super(capacity);
+	}
+
+	public int add(long address, int size, long target) {
+		return entry(address, size, target);
+	}
+
+	public int add(long address, int size, Pointer target) {
+		return add(address, size, Pointer.nativeValue(target));
+	}
+
+	public int add(long address, MemoryBuffer target) {
+		return add(address, target.size(), Pointer.nativeValue(target));
+	}
+
+	public int add(long address, int size, MemoryBuffer target, int offset) {
+		if (offset < 0 || offset + size > target.size()) {
+			throw new IndexOutOfBoundsException("Read of " + size + " bytes at offset " + offset + " does not fit in a buffer of " + target.size());
+		}
+		return add(address, size, Pointer.nativeValue(target) + offset);
+	}
+
+	public ReadBatch execute(DataSource source) {
+		return source.read(this);
+	}
+
+	public long target(int index) {
+		return local(index);
+	}
+
+}
@@ -0,0 +1,215 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.sun.jna.Pointer;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link DataSource} over a process whose temporary memory comes from a bump allocator owned by the scope rather
+ * than from thread-local caches:
+ * <pre>
+ * try (ReadScope scope = process.scope()) {
+ *     MemoryBuffer header = scope.read(address, 64);
+ *     int health = scope.readInt(player + 0x100);
+ * }
+ * </pre>
+ * Every buffer handed out stays valid until the scope is reset or closed, which releases them all at once. The
+ * native chunks behind the allocator are pooled and shared between scopes, so the memory in use is bounded by the
+ * number of open scopes, not the number of threads that ever read. A scope belongs to one reader at a time.
+ */
+public final class ReadScope implements DataSource, AutoCloseable {
+
+	public static final int CHUNK_SIZE = 64 << 10;
+
+	private static final int MAX_IDLE_CHUNKS = 256;
+	private static final int ALIGNMENT = 8;
+
+	private static final ConcurrentLinkedQueue<MemoryBuffer> idle = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger idleCount = new AtomicInteger();
+
+	private final Process process;
+	private final Pointer pointer = new Pointer(0);
+	// one reused slot per power-of-two size class for scratchBuffer, so typed reads don't grow the scope
+	private final MemoryBuffer[] scratch = new MemoryBuffer[32];
+
+	private MemoryBuffer[] chunks = new MemoryBuffer[4];
+	private int chunkCount;
+	private int current = -1;
+	private int position;
+	private boolean closed;
+
+	public ReadScope(Process process) {
+		this.process = process;
+	}
+
+	public Process process() {
+		return process;
+	}
+
+	/**
+	 * Allocates {@code size} bytes that live until the scope is reset or closed.
+	 */
+	public MemoryBuffer allocate(int size) {
+		return new MemoryBuffer(allocateRaw(size), size);
+	}
+
+	/**
+	 * Like {@link #allocate(int)}, without creating a {@link MemoryBuffer}.
+	 *
+	 * @return the native address of the allocation
+	 */
+	public long allocateRaw(int size) {
+		if (closed) {
+			throw new IllegalStateException("Scope is closed");
+		}
+		if (size < 0) {
+			throw new IllegalArgumentException("Negative size " + size);
+		}
+		if (current < 0 || position + size > chunks[current].size()) {
+			next(size);
+		}
+		long address = Pointer.nativeValue(chunks[current]) + position;
+		position = (position + size + ALIGNMENT - 1) & -ALIGNMENT;
+		return address;
+	}
+
+	/**
+	 * Bytes of chunk space used since the scope was opened or last reset.
+	 */
+	public long allocated() {
+		long allocated = position;
+		for (int i = 0; i < current; i++) {
+			allocated += chunks[i].size();
+		}
+		return allocated;
+	}
+
+	/**
+	 * Releases every allocation but keeps the chunks, for scopes that are reused across ticks.
+	 */
+	public void reset() {
+		Arrays.fill(scratch, null);
+		current = chunkCount > 0 ? 0 : -1;
+		position = 0;
+	}
+
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		Arrays.fill(scratch, null);
+		for (int i = 0; i < chunkCount; i++) {
+			MemoryBuffer chunk = chunks[i];
+			if (chunk.size() == CHUNK_SIZE && idleCount.incrementAndGet() <= MAX_IDLE_CHUNKS) {
+				idle.offer(chunk);
+			} else {
+				if (chunk.size() == CHUNK_SIZE)
+					idleCount.decrementAndGet();
+				chunk.free();
+			}
+			chunks[i] = null;
+		}
+		chunkCount = 0;
+		current = -1;
+	}
+
+	@Override
+	public MemoryBuffer read(long address, int size) {
+		MemoryBuffer buffer = allocate(size);
+		process.read(address, size, Pointer.nativeValue(buffer));
+		return buffer;
+	}
+
+	@Override
+	public void read(long address, int size, long target) {
+		process.read(address, size, target);
+	}
+
+	@Override
+	public Process write(Pointer address, MemoryBuffer buffer) {
+		return process.write(address, buffer);
+	}
+
+	@Override
+	public boolean canRead(Pointer address, int size) {
+		return process.canRead(address, size);
+	}
+
+	@Override
+	public ReadBatch read(ReadBatch batch) {
+		return process.read(batch);
+	}
+
+	@Override
+	public WriteBatch write(WriteBatch batch) {
+		return process.write(batch);
+	}
+
+	@Override
+	public MemoryBuffer scratchBuffer(int size) {
+		int sizeClass = size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+		MemoryBuffer buffer = scratch[sizeClass];
+		if (buffer == null || buffer.size() != size) {
+			long address = buffer != null ? Pointer.nativeValue(buffer) : allocateRaw(1 << sizeClass);
+			buffer = scratch[sizeClass] = new MemoryBuffer(address, size);
+		}
+		return buffer;
+	}
+
+	@Override
+	public Pointer scratchPointer(long address) {
+		Pointer.nativeValue(pointer, address);
+		return pointer;
+	}
+
+	@Override
+	public String toString() {
+		return "ReadScope{process=" + process.id() + ", chunks=" + chunkCount + ", allocated=" + allocated() + '}';
+	}
+
+	private void next(int size) {
+		// reuse the chunks kept by reset() first
+		while (++current < chunkCount) {
+			if (size <= chunks[current].size()) {
+				position = 0;
+				return;
+			}
+		}
+		MemoryBuffer chunk;
+		if (size <= CHUNK_SIZE) {
+			chunk = idle.poll();
+			if (chunk != null)
+				idleCount.decrementAndGet();
+			else
+				chunk = new MemoryBuffer(CHUNK_SIZE);
+		} else {
+			chunk = new MemoryBuffer(size);
+		}
+		if (chunkCount == chunks.length)
+			chunks = Arrays.copyOf(chunks, chunkCount << 1);
+		chunks[chunkCount] = chunk;
+		current = chunkCount++;
+		position = 0;
+	}
+
+}
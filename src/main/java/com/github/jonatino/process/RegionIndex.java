@@ -0,0 +1,209 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.IntConsumer;
+
+/**
+ * Answers which mapping or module an address belongs to with a binary search over sorted primitive arrays.
+ * <p>
+ * An index is immutable; {@link Process#refreshRegionIndex()} builds a new one when the mappings change and
+ * swaps it in whole, so readers never see a half-built index. Can be used as a pointer validator, e.g.
+ * {@code resolver.validator(process.regionIndex()::isReadable)}.
+ */
+public final class RegionIndex {
+
+	private final RegionTable table;
+	// region numbers of the table in address order, with their bounds
+	private final int[] order;
+	private final long[] start;
+	private final long[] end;
+
+	private final Module[] modules;
+	private final long[] moduleStart;
+	private final long[] moduleEnd;
+
+	public RegionIndex(RegionTable table, Collection<Module> modules) {
+		this.table = table;
+		int count = table.count();
+		long[] keys = new long[count];
+		boolean sorted = true;
+		for (int i = 0; i < count; i++) {
+			keys[i] = table.start(i);
+			if (i > 0 && Long.compareUnsigned(keys[i], keys[i - 1]) < 0)
+				sorted = false;
+		}
+		order = new int[count];
+		for (int i = 0; i < count; i++)
+			order[i] = i;
+		if (!sorted)
+			IntArrays.quickSort(order, (a, b) -> Long.compareUnsigned(keys[a], keys[b]));
+		start = new long[count];
+		end = new long[count];
+		for (int i = 0; i < count; i++) {
+			start[i] = table.start(order[i]);
+			end[i] = table.end(order[i]);
+		}
+
+		this.modules = modules.toArray(new Module[modules.size()]);
+		Arrays.sort(this.modules, (a, b) -> Long.compareUnsigned(a.start(), b.start()));
+		moduleStart = new long[this.modules.length];
+		moduleEnd = new long[this.modules.length];
+		for (int i = 0; i < this.modules.length; i++) {
+			moduleStart[i] = this.modules[i].start();
+			moduleEnd[i] = this.modules[i].end();
+		}
+	}
+
+	public RegionTable table() {
+		return table;
+	}
+
+	public int count() {
+		return order.length;
+	}
+
+	/**
+	 * The region of {@link #table()} that contains {@code address}, or -1 if it isn't mapped.
+	 */
+	public int regionOf(long address) {
+		int i = floor(start, start.length, address);
+		return i >= 0 && Long.compareUnsigned(address, end[i]) < 0 ? order[i] : -1;
+	}
+
+	/**
+	 * The module that contains {@code address}, or null.
+	 */
+	public Module moduleOf(long address) {
+		int i = moduleIndexOf(address);
+		return i >= 0 ? modules[i] : null;
+	}
+
+	/**
+	 * Position of the module that contains {@code address} among {@link #module(int)}, or -1. Modules are numbered
+	 * in address order, so the number can key per-module arrays for as long as this index is current.
+	 */
+	public int moduleIndexOf(long address) {
+		int i = floor(moduleStart, moduleStart.length, address);
+		return i >= 0 && Long.compareUnsigned(address, moduleEnd[i]) < 0 ? i : -1;
+	}
+
+	public Module module(int index) {
+		return modules[index];
+	}
+
+	public int moduleCount() {
+		return modules.length;
+	}
+
+	public boolean isMapped(long address) {
+		return regionOf(address) >= 0;
+	}
+
+	public boolean isReadable(long address) {
+		int region = regionOf(address);
+		return region >= 0 && table.isReadable(region);
+	}
+
+	public boolean isWritable(long address) {
+		int region = regionOf(address);
+		return region >= 0 && table.isWritable(region);
+	}
+
+	public boolean isExecutable(long address) {
+		int region = regionOf(address);
+		return region >= 0 && table.isExecutable(region);
+	}
+
+	/**
+	 * Whether [address, address + size) is mapped readable throughout, even across adjacent regions.
+	 */
+	public boolean isReadable(long address, long size) {
+		long end = address + size;
+		while (Long.compareUnsigned(address, end) < 0) {
+			int i = floor(start, start.length, address);
+			if (i < 0 || Long.compareUnsigned(address, this.end[i]) >= 0 || !table.isReadable(order[i]))
+				return false;
+			address = this.end[i];
+		}
+		return true;
+	}
+
+	/**
+	 * Calls {@code consumer} with every region of {@link #table()} overlapping [start, end), in address order.
+	 */
+	public void regions(long start, long end, IntConsumer consumer) {
+		for (int i = first(start); i < order.length && Long.compareUnsigned(this.start[i], end) < 0; i++) {
+			consumer.accept(order[i]);
+		}
+	}
+
+	public int[] regions(long start, long end) {
+		int from = first(start), to = from;
+		while (to < order.length && Long.compareUnsigned(this.start[to], end) < 0)
+			to++;
+		return Arrays.copyOfRange(order, from, to);
+	}
+
+	/**
+	 * The regions to cover when scanning for data: readable, and writable too when {@code writable} is set.
+	 */
+	public int[] scannable(boolean writable) {
+		int[] regions = new int[order.length];
+		int count = 0;
+		for (int region : order) {
+			if (table.isReadable(region) && (!writable || table.isWritable(region)))
+				regions[count++] = region;
+		}
+		return Arrays.copyOf(regions, count);
+	}
+
+	@Override
+	public String toString() {
+		return "RegionIndex{regions=" + order.length + ", modules=" + modules.length + '}';
+	}
+
+	/*
+	 * Position of the first region whose end lies past `address`.
+	 */
+	private int first(long address) {
+		int i = floor(start, start.length, address);
+		if (i < 0)
+			return 0;
+		return Long.compareUnsigned(address, end[i]) < 0 ? i : i + 1;
+	}
+
+	/*
+	 * Position of the last key <= `address`, or -1.
+	 */
+	private static int floor(long[] keys, int count, long address) {
+		int low = 0, high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (Long.compareUnsigned(keys[mid], address) <= 0)
+				low = mid + 1;
+			else
+				high = mid - 1;
+		}
+		return high;
+	}
+
+}
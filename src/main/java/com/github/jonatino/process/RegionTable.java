@@ -0,0 +1,197 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import java.util.Arrays;
+
+/**
+ * The memory mappings of a process, in ascending address order, kept in parallel primitive arrays so even tens
+ * of thousands of regions cost a handful of objects.
+ */
+public final class RegionTable {
+
+	public static final int READ = 1;
+	public static final int WRITE = 2;
+	public static final int EXECUTE = 4;
+	public static final int SHARED = 8;
+
+	private long[] start;
+	private long[] end;
+	private long[] offset;
+	private long[] inode;
+	private long[] device;
+	private byte[] flags;
+	private String[] path;
+	private int count;
+
+	public RegionTable() {
+		this(64);
+	}
+
+	public RegionTable(int capacity) {
+		capacity = Math.max(capacity, 1);
+		start = new long[capacity];
+		end = new long[capacity];
+		offset = new long[capacity];
+		inode = new long[capacity];
+		device = new long[capacity];
+		flags = new byte[capacity];
+		path = new String[capacity];
+	}
+
+	public int add(long start, long end, int flags, long offset, long inode, String path) {
+		return add(start, end, flags, offset, 0, inode, path);
+	}
+
+	/**
+	 * @param device the device of the backing file, encoded like {@code st_dev}
+	 */
+	public int add(long start, long end, int flags, long offset, long device, long inode, String path) {
+		if (count == this.start.length) {
+			int capacity = count << 1;
+			this.start = Arrays.copyOf(this.start, capacity);
+			this.end = Arrays.copyOf(this.end, capacity);
+			this.offset = Arrays.copyOf(this.offset, capacity);
+			this.inode = Arrays.copyOf(this.inode, capacity);
+			this.device = Arrays.copyOf(this.device, capacity);
+			this.flags = Arrays.copyOf(this.flags, capacity);
+			this.path = Arrays.copyOf(this.path, capacity);
+		}
+		this.start[count] = start;
+		this.end[count] = end;
+		this.offset[count] = offset;
+		this.inode[count] = inode;
+		this.device[count] = device;
+		this.flags[count] = (byte) flags;
+		this.path[count] = path;
+		return count++;
+	}
+
+	public int count() {
+		return count;
+	}
+
+	public long start(int region) {
+		return start[region];
+	}
+
+	public long end(int region) {
+		return end[region];
+	}
+
+	public long size(int region) {
+		return end[region] - start[region];
+	}
+
+	public long offset(int region) {
+		return offset[region];
+	}
+
+	public long inode(int region) {
+		return inode[region];
+	}
+
+	public long device(int region) {
+		return device[region];
+	}
+
+	public int flags(int region) {
+		return flags[region];
+	}
+
+	public String path(int region) {
+		return path[region];
+	}
+
+	public boolean isReadable(int region) {
+		return (flags[region] & READ) != 0;
+	}
+
+	public boolean isWritable(int region) {
+		return (flags[region] & WRITE) != 0;
+	}
+
+	public boolean isExecutable(int region) {
+		return (flags[region] & EXECUTE) != 0;
+	}
+
+	public boolean isShared(int region) {
+		return (flags[region] & SHARED) != 0;
+	}
+
+	public String permissions(int region) {
+		int flags = this.flags[region];
+		return new String(new char[]{(flags & READ) != 0 ? 'r' : '-', (flags & WRITE) != 0 ? 'w' : '-', (flags & EXECUTE) != 0 ? 'x' : '-', (flags & SHARED) != 0 ? 's' : 'p'});
+	}
+
+	/**
+	 * Whether region {@code region} of this table and region {@code other} of {@code table} describe the same
+	 * mapping.
+	 */
+	public boolean same(int region, RegionTable table, int other) {
+		return start[region] == table.start[other] && end[region] == table.end[other] && offset[region] == table.offset[other]
+				&& inode[region] == table.inode[other] && device[region] == table.device[other] && flags[region] == table.flags[other]
+				&& path[region].equals(table.path[other]);
+	}
+
+	public boolean same(RegionTable table) {
+		if (count != table.count)
+			return false;
+		for (int i = 0; i < count; i++) {
+			if (!same(i, table, i))
+				return false;
+		}
+		return true;
+	}
+
+	public RegionTable copy() {
+		RegionTable copy = new RegionTable(count);
+		System.arraycopy(start, 0, copy.start, 0, count);
+		System.arraycopy(end, 0, copy.end, 0, count);
+		System.arraycopy(offset, 0, copy.offset, 0, count);
+		System.arraycopy(inode, 0, copy.inode, 0, count);
+		System.arraycopy(device, 0, copy.device, 0, count);
+		System.arraycopy(flags, 0, copy.flags, 0, count);
+		System.arraycopy(path, 0, copy.path, 0, count);
+		copy.count = count;
+		return copy;
+	}
+
+	public void clear() {
+		Arrays.fill(path, 0, count, null);
+		count = 0;
+	}
+
+	public static int flags(CharSequence permissions) {
+		int flags = 0;
+		if (permissions.charAt(0) == 'r')
+			flags |= READ;
+		if (permissions.charAt(1) == 'w')
+			flags |= WRITE;
+		if (permissions.charAt(2) == 'x')
+			flags |= EXECUTE;
+		if (permissions.charAt(3) == 's')
+			flags |= SHARED;
+		return flags;
+	}
+
+	@Override
+	public String toString() {
+		return "RegionTable{count=" + count + '}';
+	}
+
+}
@@ -0,0 +1,736 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.jonatino.process;
+
+import com.github.jonatino.misc.Cacheable;
+import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.misc.Unsafes;
+import com.github.jonatino.misc.Utils;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import sun.misc.Unsafe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps a {@link Process} and keeps the memory that can't change for the life of a mapping, code and read-only
+ * data, in off-heap pages once it has been read:
+ * <pre>
+ * Process process = new SegmentCache(Processes.byName("target"));
+ * Module client = process.getModule("client.so");
+ * </pre>
+ * A region is immutable when it is a readable, non-writable, private mapping of a file. Backends without a
+ * {@link RegionTable} fall back to the modules looked up through this process whose {@link Module#permissions()}
+ * aren't writable. Pages are fetched on first touch, all the missing pages of one read in a single vectored read,
+ * and served locally from then on, so signature scans, {@link Module#GetAbsoluteAddress} and constant lookups
+ * stop costing syscalls once warm. Reads that aren't wholly inside immutable regions go to the process, and so do
+ * batches.
+ * <p>
+ * With {@link #mapFiles(boolean)}, pages are instead answered from a read-only mapping of the file behind the
+ * region, found through /proc/&lt;pid&gt;/map_files or the path in the maps and only used if its inode and
+ * device match the region's. /proc/&lt;pid&gt;/pagemap tells which pages the process copied on write, e.g. ones it
+ * relocated or patched, and those are read from the process as before.
+ * <p>
+ * Modules handed out by this process read through the cache. Writes go to the process and are copied into the
+ * cached pages they touch, so patching code through this process stays coherent. {@link #initModules()} and
+ * {@link #refreshRegionIndex()} classify the mappings again and stop serving the pages of regions that went away.
+ * Hits take no lock and don't allocate, so those pages are only given back by {@link #free()}, once no reader can
+ * still be copying from them.
+ */
+public final class SegmentCache extends ForwardingProcess {
+
+	public static final int PAGE_SIZE = 4096;
+
+	private static final int PAGE_SHIFT = 12;
+	private static final int SLAB_SIZE = 64 << 10;
+
+	// pagemap entry bits
+	private static final long PRESENT = 1L << 63;
+	private static final long SWAPPED = 1L << 62;
+	private static final long FILE_PAGE = 1L << 61;
+
+	private static final Unsafe unsafe = Unsafes.UNSAFE;
+
+	private final long budget;
+	private final boolean mapped;
+
+	private volatile Segments segments;
+
+	// fills, guarded by this
+	private final ReadBatch fill = new ReadBatch();
+	private final List<MemoryBuffer> slabs = new ArrayList<>();
+	private long[] free = new long[64];
+	private int freeCount;
+	private long slab;
+	private int slabSize;
+	private int slabUsed;
+	private long held;
+	private long fills;
+	private long mappedPages;
+
+	private volatile boolean mapFiles;
+	// kept until free() so no reader can see a mapping unmapped under it
+	private final List<MappedByteBuffer> mappings = new ArrayList<>();
+	private FileChannel pagemap;
+	private boolean pagemapFailed;
+	private ByteBuffer entries = ByteBuffer.allocateDirect(64 << 3).order(ByteOrder.nativeOrder());
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder passes = new LongAdder();
+
+	public SegmentCache(Process process) {
+		this(process, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param budget the most off-heap memory the cached pages may take, in bytes; reads that would need more go to
+	 *               the process
+	 */
+	public SegmentCache(Process process, long budget) {
+		super(process);
+		if (budget < PAGE_SIZE) {
+			throw new IllegalArgumentException("Budget must be at least " + PAGE_SIZE + " bytes, got " + budget);
+		}
+		this.budget = budget;
+		RegionIndex index = index();
+		this.mapped = index != null;
+		classify(index);
+	}
+
+	/**
+	 * Answers pages of immutable regions from mappings of their files instead of reading them from the process.
+	 * Applies to pages fetched from now on.
+	 */
+	public SegmentCache mapFiles(boolean mapFiles) {
+		this.mapFiles = mapFiles;
+		return this;
+	}
+
+	public boolean mapFiles() {
+		return mapFiles;
+	}
+
+	/**
+	 * Whether {@code address} lies in a region this cache treats as immutable.
+	 */
+	public boolean isImmutable(long address) {
+		return segments.find(address) >= 0;
+	}
+
+	/**
+	 * Number of immutable regions.
+	 */
+	public int segments() {
+		return segments.start.length;
+	}
+
+	/**
+	 * Pages served from the cache.
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Pages fetched from the process.
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Reads that went to the process because they weren't wholly immutable, or didn't fit the budget.
+	 */
+	public long passes() {
+		return passes.sum();
+	}
+
+	/**
+	 * Pages answered from a mapping of their file.
+	 */
+	public synchronized long mappedPages() {
+		return mappedPages;
+	}
+
+	/**
+	 * Number of vectored reads issued to fetch missing pages.
+	 */
+	public synchronized long fills() {
+		return fills;
+	}
+
+	/**
+	 * Off-heap bytes taken by cached pages, including the free ones kept for reuse and those of regions that went
+	 * away, which are held until {@link #free()}.
+	 */
+	public synchronized long bytesHeld() {
+		return held;
+	}
+
+	public synchronized void free() {
+		segments = new Segments(0);
+		for (MemoryBuffer slab : slabs)
+			slab.free();
+		slabs.clear();
+		freeCount = 0;
+		slabSize = slabUsed = 0;
+		held = 0;
+		fill.free();
+		mappings.clear();
+		if (pagemap != null) {
+			try {
+				pagemap.close();
+			} catch (IOException ignored) {
+			}
+			pagemap = null;
+		}
+	}
+
+	@Override
+	public void initModules() {
+		RegionIndex index = null;
+		// refreshing the index rebuilds the modules from the same read of the mappings
+		if (mapped) {
+			index = process.refreshRegionIndex();
+			unbindModules();
+		} else {
+			super.initModules();
+		}
+		classify(index);
+	}
+
+	@Override
+	public void close() {
+		free();
+		super.close();
+	}
+
+	@Override
+	public RegionIndex refreshRegionIndex() {
+		RegionIndex index = process.refreshRegionIndex();
+		if (mapped)
+			classify(index);
+		return index;
+	}
+
+	@Override
+	public MemoryBuffer read(long address, int size) {
+		MemoryBuffer buffer = Cacheable.buffer(size);
+		read(address, size, Pointer.nativeValue(buffer));
+		return buffer;
+	}
+
+	@Override
+	public void read(long address, int size, long target) {
+		if (!local(address, size, null, target))
+			process.read(address, size, target);
+	}
+
+	@Override
+	protected void write(long at, Pointer address, MemoryBuffer buffer) {
+		process.write(address, buffer);
+		update(at, buffer.size(), Pointer.nativeValue(buffer));
+	}
+
+	@Override
+	public WriteBatch write(WriteBatch batch) {
+		process.write(batch);
+		for (int i = 0; i < batch.count(); i++) {
+			if (batch.succeeded(i))
+				update(batch.address(i), batch.length(i), batch.local(i));
+		}
+		return batch;
+	}
+
+	@Override
+	public boolean canRead(Pointer address, int size) {
+		return covered(Pointer.nativeValue(address), size) || process.canRead(address, size);
+	}
+
+	@Override
+	public boolean readBoolean(long address) {
+		return readByte(address) != 0;
+	}
+
+	@Override
+	public int readByte(long address) {
+		long at = at(address, 1);
+		return at != 0 ? unsafe.getByte(at) : process.readByte(address);
+	}
+
+	@Override
+	public int readShort(long address) {
+		long at = at(address, 2);
+		return at != 0 ? unsafe.getShort(at) : process.readShort(address);
+	}
+
+	@Override
+	public int readInt(long address) {
+		long at = at(address, 4);
+		return at != 0 ? unsafe.getInt(at) : process.readInt(address);
+	}
+
+	@Override
+	public long readUnsignedInt(long address) {
+		return Integer.toUnsignedLong(readInt(address));
+	}
+
+	@Override
+	public long readLong(long address) {
+		long at = at(address, 8);
+		return at != 0 ? unsafe.getLong(at) : process.readLong(address);
+	}
+
+	@Override
+	public float readFloat(long address) {
+		long at = at(address, 4);
+		return at != 0 ? unsafe.getFloat(at) : process.readFloat(address);
+	}
+
+	@Override
+	public double readDouble(long address) {
+		long at = at(address, 8);
+		return at != 0 ? unsafe.getDouble(at) : process.readDouble(address);
+	}
+
+	@Override
+	public long readPointer(long address) {
+		return readLong(address);
+	}
+
+	@Override
+	public byte[] readBytes(long address, byte[] dst, int off, int len) {
+		int bytes = Utils.arrayBytes(dst.length, off, len, 1);
+		return local(address, bytes, dst, Unsafe.ARRAY_BYTE_BASE_OFFSET + off) ? dst : process.readBytes(address, dst, off, len);
+	}
+
+	@Override
+	public int[] readInts(long address, int[] dst, int off, int len) {
+		int bytes = Utils.arrayBytes(dst.length, off, len, 4);
+		return local(address, bytes, dst, Unsafe.ARRAY_INT_BASE_OFFSET + ((long) off << 2)) ? dst : process.readInts(address, dst, off, len);
+	}
+
+	@Override
+	public long[] readLongs(long address, long[] dst, int off, int len) {
+		int bytes = Utils.arrayBytes(dst.length, off, len, 8);
+		return local(address, bytes, dst, Unsafe.ARRAY_LONG_BASE_OFFSET + ((long) off << 3)) ? dst : process.readLongs(address, dst, off, len);
+	}
+
+	@Override
+	public float[] readFloats(long address, float[] dst, int off, int len) {
+		int bytes = Utils.arrayBytes(dst.length, off, len, 4);
+		return local(address, bytes, dst, Unsafe.ARRAY_FLOAT_BASE_OFFSET + ((long) off << 2)) ? dst : process.readFloats(address, dst, off, len);
+	}
+
+	@Override
+	public double[] readDoubles(long address, double[] dst, int off, int len) {
+		int bytes = Utils.arrayBytes(dst.length, off, len, 8);
+		return local(address, bytes, dst, Unsafe.ARRAY_DOUBLE_BASE_OFFSET + ((long) off << 3)) ? dst : process.readDoubles(address, dst, off, len);
+	}
+
+	@Override
+	public String toString() {
+		return "SegmentCache{process=" + process.id() + ", segments=" + segments() + ", hits=" + hits() + ", misses=" + misses() + '}';
+	}
+
+	/*
+	 * The native address of `size` bytes at `address` when they sit in one page of an immutable region, fetching
+	 * the page if needed, or 0 when they must be read from the process.
+	 */
+	private long at(long address, int size) {
+		int offset = (int) (address & (PAGE_SIZE - 1));
+		Segments segments = this.segments;
+		int segment = offset + size <= PAGE_SIZE ? segments.find(address) : -1;
+		if (segment < 0) {
+			passes.increment();
+			return 0;
+		}
+		int page = (int) ((address >>> PAGE_SHIFT) - (segments.start[segment] >>> PAGE_SHIFT));
+		long line = segments.pages[segment].get(page);
+		if (line == 0) {
+			if (!fetch(segments, address, size)) {
+				passes.increment();
+				return 0;
+			}
+			line = segments.pages[segment].get(page);
+		} else {
+			hits.increment();
+		}
+		return line + offset;
+	}
+
+	/*
+	 * Copies [address, address + size) to `target`, relative to `base` when it is an array, if the range lies wholly
+	 * in immutable regions and its missing pages could be fetched.
+	 */
+	private boolean local(long address, int size, Object base, long target) {
+		if (size <= 0)
+			return size == 0;
+		Segments segments = this.segments;
+		int missing = scan(segments, address, size);
+		if (missing < 0 || missing > 0 && !fetch(segments, address, size)) {
+			passes.increment();
+			return false;
+		}
+		long position = address, end = address + size;
+		int segment = segments.find(address);
+		while (position < end) {
+			if (position >= segments.end[segment])
+				segment++;
+			int page = (int) ((position >>> PAGE_SHIFT) - (segments.start[segment] >>> PAGE_SHIFT));
+			int offset = (int) (position & (PAGE_SIZE - 1));
+			int length = (int) Math.min(PAGE_SIZE - offset, end - position);
+			unsafe.copyMemory(null, segments.pages[segment].get(page) + offset, base, target + (position - address), length);
+			position += length;
+		}
+		hits.add(pagesOf(address, size) - missing);
+		return true;
+	}
+
+	/*
+	 * Number of pages of [address, address + size) that aren't cached yet, or -1 if the range leaves the immutable
+	 * regions.
+	 */
+	private static int scan(Segments segments, long address, int size) {
+		int segment = segments.find(address);
+		if (segment < 0)
+			return -1;
+		int missing = 0;
+		long end = address + size;
+		for (long p = address >>> PAGE_SHIFT, last = (end - 1) >>> PAGE_SHIFT; p <= last; p++) {
+			if (p << PAGE_SHIFT >= segments.end[segment]) {
+				if (++segment == segments.start.length || segments.start[segment] != segments.end[segment - 1])
+					return -1;
+			}
+			if (segments.pages[segment].get((int) (p - (segments.start[segment] >>> PAGE_SHIFT))) == 0)
+				missing++;
+		}
+		return missing;
+	}
+
+	private boolean covered(long address, int size) {
+		return size > 0 && scan(segments, address, size) >= 0;
+	}
+
+	/*
+	 * Fetches the missing pages of a range that lies in immutable regions with one vectored read. False if the
+	 * budget ran out, a page couldn't be read, or the regions were classified again meanwhile.
+	 */
+	private synchronized boolean fetch(Segments segments, long address, int size) {
+		if (segments != this.segments)
+			return false;
+		fill.clear();
+		int segment = segments.find(address);
+		long end = address + size;
+		long first = address >>> PAGE_SHIFT, last = (end - 1) >>> PAGE_SHIFT;
+		boolean mapping = mapFiles && pagemap(first, (int) (last - first + 1));
+		for (long p = first; p <= last; p++) {
+			if (p << PAGE_SHIFT >= segments.end[segment])
+				segment++;
+			int page = (int) (p - (segments.start[segment] >>> PAGE_SHIFT));
+			if (segments.pages[segment].get(page) != 0)
+				continue;
+			if (mapping) {
+				long entry = entries.getLong((int) (p - first) << 3);
+				long line = mapped(segments, segment, page);
+				// a page that isn't resident or swapped out was never copied, so it still holds the file's bytes
+				if (line != 0 && ((entry & FILE_PAGE) != 0 || (entry & (PRESENT | SWAPPED)) == 0)) {
+					segments.pages[segment].set(page, line);
+					mappedPages++;
+					continue;
+				}
+			}
+			long line = allocate();
+			if (line == 0) {
+				release(fill);
+				return false;
+			}
+			fill.add(p << PAGE_SHIFT, PAGE_SIZE, line);
+		}
+		if (fill.count() == 0)
+			return true;
+		fills++;
+		process.read(fill);
+		if (!fill.complete()) {
+			release(fill);
+			return false;
+		}
+		for (int i = 0; i < fill.count(); i++) {
+			long page = fill.address(i);
+			segment = segments.find(page);
+			segments.pages[segment].set((int) ((page - segments.start[segment]) >>> PAGE_SHIFT), fill.local(i));
+		}
+		misses.add(fill.count());
+		return true;
+	}
+
+	/*
+	 * Copies what was just written to [address, address + size) into the cached pages it overlaps.
+	 */
+	private synchronized void update(long address, int size, long source) {
+		Segments segments = this.segments;
+		long end = address + size;
+		for (long position = address; position < end; ) {
+			int offset = (int) (position & (PAGE_SIZE - 1));
+			int length = (int) Math.min(PAGE_SIZE - offset, end - position);
+			int segment = segments.find(position);
+			if (segment >= 0) {
+				int page = (int) ((position >>> PAGE_SHIFT) - (segments.start[segment] >>> PAGE_SHIFT));
+				long line = segments.pages[segment].get(page);
+				// a mapping of the file is read-only, and the page is now a private copy anyway, so refetch it
+				if (segments.inFile(segment, line))
+					segments.pages[segment].set(page, 0);
+				else if (line != 0)
+					unsafe.copyMemory(source + (position - address), line + offset, length);
+			}
+			position += length;
+		}
+	}
+
+	/*
+	 * Reads the pagemap entries of `count` pages from `first` into `entries`, or returns false if pagemap can't be
+	 * read, in which case nothing is mapped since copied pages couldn't be told apart.
+	 */
+	private boolean pagemap(long first, int count) {
+		if (pagemapFailed)
+			return false;
+		try {
+			if (pagemap == null)
+				pagemap = FileChannel.open(Paths.get("/proc/" + process.id() + "/pagemap"), StandardOpenOption.READ);
+			if (entries.capacity() < count << 3)
+				entries = ByteBuffer.allocateDirect(Integer.highestOneBit(count << 3) << 1).order(ByteOrder.nativeOrder());
+			entries.clear().limit(count << 3);
+			for (long position = first << 3; entries.hasRemaining(); ) {
+				int read = pagemap.read(entries, position + entries.position());
+				if (read <= 0)
+					return false;
+			}
+			return true;
+		} catch (IOException | SecurityException e) {
+			pagemapFailed = true;
+			return false;
+		}
+	}
+
+	/*
+	 * The address of page `page` of `segment` in a mapping of its file, mapping the file on first use, or 0 if the
+	 * file can't be mapped or ends before the page does.
+	 */
+	private long mapped(Segments segments, int segment, int page) {
+		if (segments.file[segment] == 0)
+			segments.file[segment] = map(segments, segment);
+		long offset = (long) page << PAGE_SHIFT;
+		return segments.file[segment] > 0 && offset + PAGE_SIZE <= segments.fileLength[segment] ? segments.file[segment] + offset : 0;
+	}
+
+	private long map(Segments segments, int segment) {
+		long length = segments.end[segment] - segments.start[segment];
+		if (segments.path[segment] == null || length > Integer.MAX_VALUE)
+			return -1;
+		String[] candidates = {
+				"/proc/" + process.id() + "/map_files/" + Long.toHexString(segments.start[segment]) + '-' + Long.toHexString(segments.end[segment]),
+				segments.path[segment]
+		};
+		for (String name : candidates) {
+			try {
+				Path candidate = Paths.get(name);
+				Map<String, Object> attributes = Files.readAttributes(candidate, "unix:ino,dev");
+				if ((Long) attributes.get("ino") != segments.inode[segment] || (Long) attributes.get("dev") != segments.device[segment])
+					continue;
+				try (FileChannel channel = FileChannel.open(candidate, StandardOpenOption.READ)) {
+					long size = Math.min(length, channel.size() - segments.offset[segment]) & -PAGE_SIZE;
+					if (size <= 0)
+						return -1;
+					MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, segments.offset[segment], size);
+					mappings.add(buffer);
+					segments.fileLength[segment] = size;
+					return Pointer.nativeValue(Native.getDirectBufferPointer(buffer));
+				}
+			} catch (IOException | UnsupportedOperationException | SecurityException | IllegalArgumentException e) {
+				// try the next candidate
+			}
+		}
+		return -1;
+	}
+
+	private long allocate() {
+		if (freeCount > 0)
+			return free[--freeCount];
+		if (slabUsed == slabSize) {
+			int size = (int) Math.min(SLAB_SIZE, (budget - held) & -PAGE_SIZE);
+			if (size < PAGE_SIZE)
+				return 0;
+			MemoryBuffer buffer = new MemoryBuffer(size);
+			slabs.add(buffer);
+			slab = Pointer.nativeValue(buffer);
+			slabSize = size;
+			slabUsed = 0;
+			held += size;
+		}
+		long line = slab + slabUsed;
+		slabUsed += PAGE_SIZE;
+		return line;
+	}
+
+	private void release(ReadBatch batch) {
+		for (int i = 0; i < batch.count(); i++)
+			release(batch.local(i));
+	}
+
+	private void release(long line) {
+		if (freeCount == free.length)
+			free = Arrays.copyOf(free, freeCount << 1);
+		free[freeCount++] = line;
+	}
+
+	/*
+	 * Builds the immutable regions from `index`, or from the modules handed out when the process has no region
+	 * table, keeping the pages of regions that are still mapped the same way. The pages of the others aren't
+	 * reused, as a reader may still be copying from them without a lock.
+	 */
+	private synchronized void classify(RegionIndex index) {
+		Segments previous = segments;
+		long[] start, end, offset, inode, device;
+		String[] path;
+		int count = 0;
+		if (mapped) {
+			RegionTable table = index.table();
+			start = new long[table.count()];
+			end = new long[start.length];
+			offset = new long[start.length];
+			inode = new long[start.length];
+			device = new long[start.length];
+			path = new String[start.length];
+			for (int region : index.scannable(false)) {
+				if (table.isWritable(region) || table.isShared(region) || table.inode(region) == 0)
+					continue;
+				start[count] = table.start(region);
+				end[count] = table.end(region);
+				offset[count] = table.offset(region);
+				inode[count] = table.inode(region);
+				device[count] = table.device(region);
+				path[count++] = table.path(region);
+			}
+		} else {
+			Module[] modules = boundModules().toArray(new Module[0]);
+			Arrays.sort(modules, (a, b) -> Long.compareUnsigned(a.start(), b.start()));
+			start = new long[modules.length];
+			end = new long[modules.length];
+			offset = new long[modules.length];
+			inode = new long[modules.length];
+			device = new long[modules.length];
+			path = new String[modules.length];
+			for (Module module : modules) {
+				if (!module.isReadable() || module.isWritable() || count > 0 && module.start() < end[count - 1])
+					continue;
+				start[count] = module.start() & -PAGE_SIZE;
+				end[count++] = (module.end() + PAGE_SIZE - 1) & -PAGE_SIZE;
+			}
+		}
+		Segments next = new Segments(count);
+		for (int i = 0; i < count; i++) {
+			next.start[i] = start[i];
+			next.end[i] = end[i];
+			next.offset[i] = offset[i];
+			next.inode[i] = inode[i];
+			next.device[i] = device[i];
+			next.path[i] = path[i];
+			int same = previous != null ? previous.find(start[i]) : -1;
+			if (same >= 0 && previous.start[same] == start[i] && previous.end[same] == end[i] && previous.offset[same] == offset[i]
+					&& previous.inode[same] == inode[i] && previous.device[same] == device[i]) {
+				next.pages[i] = previous.pages[same];
+				next.file[i] = previous.file[same];
+				next.fileLength[i] = previous.fileLength[same];
+			} else {
+				next.pages[i] = new AtomicLongArray((int) ((end[i] - start[i]) >>> PAGE_SHIFT));
+			}
+		}
+		segments = next;
+	}
+
+	@Override
+	protected void bound(Module module) {
+		if (!mapped)
+			classify(null);
+	}
+
+	private static int pagesOf(long address, int size) {
+		return (int) (((address + size - 1) >>> PAGE_SHIFT) - (address >>> PAGE_SHIFT) + 1);
+	}
+
+	private static final class Segments {
+
+		final long[] start;
+		final long[] end;
+		// what the region maps, so it is only kept across classifications if it still maps the same thing
+		final long[] offset;
+		final long[] inode;
+		final long[] device;
+		final String[] path;
+		// native address of each cached page, 0 until fetched
+		final AtomicLongArray[] pages;
+		// address of the mapping of the file, 0 until tried and -1 if it couldn't be mapped; guarded by the cache
+		final long[] file;
+		final long[] fileLength;
+
+		Segments(int count) {
+			start = new long[count];
+			end = new long[count];
+			offset = new long[count];
+			inode = new long[count];
+			device = new long[count];
+			path = new String[count];
+			pages = new AtomicLongArray[count];
+			file = new long[count];
+			fileLength = new long[count];
+		}
+
+		boolean inFile(int segment, long line) {
+			return file[segment] > 0 && line - file[segment] >= 0 && line - file[segment] < fileLength[segment];
+		}
+
+		int find(long address) {
+			int low = 0, high = start.length - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (Long.compareUnsigned(start[mid], address) <= 0)
+					low = mid + 1;
+				else
+					high = mid - 1;
+			}
+			return high >= 0 && Long.compareUnsigned(address, end[high]) < 0 ? high : -1;
+		}
+
+	}
+
+}
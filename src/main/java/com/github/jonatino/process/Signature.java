@@ -0,0 +1,169 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A byte pattern with wildcards, compiled from IDA style text such as {@code "48 8B 05 ? ? ? ? 48 85 C0"}
+ * ({@code ?} and {@code ??} both mean any byte) or from a byte array and an {@code "xx????x"} mask.
+ * <p>
+ * Matching uses a Horspool skip table built from the bytes after the last wildcard, so the search jumps over
+ * most of the memory instead of testing every offset. Instances are immutable and can be shared between threads.
+ */
+public final class Signature {
+
+	private final String text;
+	private final byte[] bytes;
+	private final boolean[] solid;
+	private final int length;
+
+	// leading and trailing wildcards are only a length constraint, the search runs on what's between them
+	private final int head;
+	private final int core;
+	private final int[] shift = new int[256];
+
+	private Signature(String text, byte[] bytes, boolean[] solid) {
+		this.text = text;
+		this.bytes = bytes;
+		this.solid = solid;
+		this.length = bytes.length;
+
+		int head = 0, tail = length;
+		while (head < length && !solid[head])
+			head++;
+		while (tail > head && !solid[tail - 1])
+			tail--;
+		if (head == tail) {
+			throw new IllegalArgumentException("Signature '" + text + "' has no fixed bytes");
+		}
+		this.head = head;
+		this.core = tail - head;
+
+		int last = core - 1, lastWildcard = -1;
+		for (int i = 0; i < last; i++) {
+			if (!solid[head + i])
+				lastWildcard = i;
+		}
+		Arrays.fill(shift, last - lastWildcard);
+		for (int i = lastWildcard + 1; i < last; i++) {
+			shift[bytes[head + i] & 0xFF] = last - i;
+		}
+	}
+
+	public static Signature compile(String pattern) {
+		String[] tokens = pattern.trim().split("\\s+");
+		byte[] bytes = new byte[tokens.length];
+		boolean[] solid = new boolean[tokens.length];
+		for (int i = 0; i < tokens.length; i++) {
+			String token = tokens[i];
+			if (token.equals("?") || token.equals("??")) {
+				continue;
+			}
+			if (token.length() != 2) {
+				throw new IllegalArgumentException("Invalid token '" + token + "' in signature '" + pattern + "'");
+			}
+			try {
+				bytes[i] = (byte) Integer.parseInt(token, 16);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid token '" + token + "' in signature '" + pattern + "'");
+			}
+			solid[i] = true;
+		}
+		return new Signature(pattern, bytes, solid);
+	}
+
+	public static Signature of(byte[] bytes, String mask) {
+		if (bytes.length != mask.length()) {
+			throw new IllegalArgumentException("Mask '" + mask + "' does not cover " + bytes.length + " bytes");
+		}
+		boolean[] solid = new boolean[bytes.length];
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < bytes.length; i++) {
+			solid[i] = mask.charAt(i) != '?';
+			if (i > 0)
+				text.append(' ');
+			text.append(solid[i] ? String.format("%02X", bytes[i] & 0xFF) : "?");
+		}
+		return new Signature(text.toString(), bytes.clone(), solid);
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public byte get(int index) {
+		return bytes[index];
+	}
+
+	public boolean isWildcard(int index) {
+		return !solid[index];
+	}
+
+	public long[] scan(Module module) {
+		return SignatureScanner.DEFAULT.scan(this, module);
+	}
+
+	public long find(Module module) {
+		return SignatureScanner.DEFAULT.find(this, module);
+	}
+
+	public boolean matches(ByteBuffer buffer, int at) {
+		if (at < 0 || at + length > buffer.limit())
+			return false;
+		for (int i = 0; i < length; i++) {
+			if (solid[i] && buffer.get(at + i) != bytes[i])
+				return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Adds base + offset for every match starting in [from, to) that fits entirely below buffer.limit().
+	 * Returns early after the first match when `first` is set.
+	 */
+	void search(ByteBuffer buffer, int from, int to, long base, LongArrayList out, boolean first) {
+		int last = core - 1;
+		int end = Math.min(to, buffer.limit() - length + 1);
+		for (int i = from + head; i - head < end; ) {
+			byte b = buffer.get(i + last);
+			if (b == bytes[head + last] && matchesCore(buffer, i)) {
+				out.add(base + i - head);
+				if (first)
+					return;
+			}
+			i += shift[b & 0xFF];
+		}
+	}
+
+	private boolean matchesCore(ByteBuffer buffer, int at) {
+		for (int i = core - 2; i >= 0; i--) {
+			if (solid[head + i] && buffer.get(at + i) != bytes[head + i])
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "Signature{" + text + '}';
+	}
+
+}
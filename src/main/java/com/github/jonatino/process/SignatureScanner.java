@@ -0,0 +1,191 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.process.jfr.Flight;
+import com.sun.jna.Pointer;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scans remote memory for {@link Signature}s. The range is cut into chunks that are read straight into off-heap
+ * buffers and searched in place, with neighbouring chunks overlapping by the pattern length so no match is lost
+ * on a boundary. Chunks are spread over a {@link ForkJoinPool}.
+ * <p>
+ * Chunks that can't be read as a whole are retried page by page and only their readable pages are searched.
+ */
+public final class SignatureScanner {
+
+	public static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+
+	static final int PAGE_SIZE = 4096;
+
+	public static final SignatureScanner DEFAULT = new SignatureScanner();
+
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+
+	public SignatureScanner() {
+		this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	public SignatureScanner(ForkJoinPool pool, int chunkSize) {
+		if (chunkSize < PAGE_SIZE) {
+			throw new IllegalArgumentException("Chunk size must be at least " + PAGE_SIZE + " bytes");
+		}
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+	}
+
+	public long[] scan(Signature signature, Module module) {
+		return scan(signature, module.process(), module.start(), module.size());
+	}
+
+	public long[] scan(Signature signature, DataSource source, long start, long size) {
+		Object event = Flight.beginScan();
+		long[] matches = walk(source, start, size, signature.length() - 1, (chunk, from, to, base, out) -> signature.search(chunk, from, to, base, out, false)).toLongArray();
+		Flight.endScan(event, "signature", source, start, size, matches.length);
+		return matches;
+	}
+
+	/**
+	 * @return the lowest matching address, or {@link PointerChain#INVALID} when the signature isn't found
+	 */
+	public long find(Signature signature, Module module) {
+		return find(signature, module.process(), module.start(), module.size());
+	}
+
+	public long find(Signature signature, DataSource source, long start, long size) {
+		Object event = Flight.beginScan();
+		LongArrayList matches = walk(source, start, size, signature.length() - 1, (chunk, from, to, base, out) -> {
+			if (out.isEmpty())
+				signature.search(chunk, from, to, base, out, true);
+		});
+		Flight.endScan(event, "signature find", source, start, size, matches.size());
+		return matches.isEmpty() ? PointerChain.INVALID : matches.getLong(0);
+	}
+
+	/*
+	 * Runs `matcher` over [start, start + size). Every chunk gets `overlap` extra bytes past its end so matches
+	 * starting near the end can complete; results come back in address order.
+	 */
+	LongArrayList walk(DataSource source, long start, long size, int overlap, ChunkMatcher matcher) {
+		if (size <= 0)
+			return new LongArrayList();
+		int chunks = (int) ((size + chunkSize - 1) / chunkSize);
+		ScanTask task = new ScanTask(source, start, start + size, overlap, matcher, 0, chunks);
+		return chunks == 1 ? task.compute() : pool.invoke(task);
+	}
+
+	interface ChunkMatcher {
+
+		/*
+		 * Reports matches starting at buffer offsets [from, to); the buffer limit marks the last readable byte.
+		 */
+		void match(ByteBuffer chunk, int from, int to, long base, LongArrayList out);
+
+	}
+
+	private final class ScanTask extends RecursiveTask<LongArrayList> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final DataSource source;
+		private final long start, end;
+		private final int overlap;
+		private final ChunkMatcher matcher;
+		private final int from, to;
+
+		ScanTask(DataSource source, long start, long end, int overlap, ChunkMatcher matcher, int from, int to) {
+			this.source = source;
+			this.start = start;
+			this.end = end;
+			this.overlap = overlap;
+			this.matcher = matcher;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected LongArrayList compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				ScanTask right = new ScanTask(source, start, end, overlap, matcher, mid, to);
+				right.fork();
+				LongArrayList left = new ScanTask(source, start, end, overlap, matcher, from, mid).compute();
+				left.addAll(right.join());
+				return left;
+			}
+			LongArrayList out = new LongArrayList();
+			long base = start + (long) from * chunkSize;
+			int matchLength = (int) Math.min(chunkSize, end - base);
+			int length = (int) Math.min((long) chunkSize + overlap, end - base);
+			MemoryBuffer buffer = new MemoryBuffer(length);
+			try {
+				ByteBuffer chunk = buffer.getByteBuffer(0, length);
+				try {
+					source.read(base, length, Pointer.nativeValue(buffer));
+					matcher.match(chunk, 0, matchLength, base, out);
+				} catch (RuntimeException e) {
+					scanReadable(buffer, chunk, base, length, matchLength, out);
+				}
+			} finally {
+				buffer.free();
+			}
+			return out;
+		}
+
+		private void scanReadable(MemoryBuffer buffer, ByteBuffer chunk, long base, int length, int matchLength, LongArrayList out) {
+			int run = -1;
+			for (int offset = 0; offset < length; ) {
+				long address = base + offset;
+				int page = (int) Math.min(PAGE_SIZE - (address & (PAGE_SIZE - 1)), length - offset);
+				boolean readable;
+				try {
+					source.read(address, page, Pointer.nativeValue(buffer) + offset);
+					readable = true;
+				} catch (RuntimeException e) {
+					readable = false;
+				}
+				if (readable && run < 0) {
+					run = offset;
+				} else if (!readable && run >= 0) {
+					scanRun(chunk, run, offset, matchLength, base, out);
+					run = -1;
+				}
+				offset += page;
+			}
+			if (run >= 0) {
+				scanRun(chunk, run, length, matchLength, base, out);
+			}
+		}
+
+		private void scanRun(ByteBuffer chunk, int runStart, int runEnd, int matchLength, long base, LongArrayList out) {
+			if (runStart >= matchLength)
+				return;
+			ByteBuffer run = chunk.duplicate();
+			run.limit(runEnd);
+			matcher.match(run, runStart, Math.min(runEnd, matchLength), base, out);
+		}
+
+	}
+
+}
@@ -0,0 +1,238 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Many {@link Signature}s compiled into one Aho-Corasick automaton so a module is read and searched once no
+ * matter how many patterns are looked for.
+ * <p>
+ * Every signature is anchored on its longest run of fixed bytes; the anchors form the automaton and each anchor
+ * hit is verified against the full pattern, wildcards included. A set is immutable and can be reused across
+ * modules, processes and threads.
+ */
+public final class SignatureSet {
+
+	private final Signature[] signatures;
+	private final int[] anchorOffset;
+	private final int[] anchorLength;
+	private final int maxLength;
+
+	// dense DFA, state * 256 + byte -> state
+	private final int[] delta;
+	// signatures whose anchor ends in a state, suffix matches included
+	private final int[][] output;
+
+	public SignatureSet(Signature... signatures) {
+		if (signatures.length == 0) {
+			throw new IllegalArgumentException("A signature set needs at least one signature");
+		}
+		this.signatures = signatures.clone();
+		this.anchorOffset = new int[signatures.length];
+		this.anchorLength = new int[signatures.length];
+
+		int states = 1, maxLength = 0;
+		for (int s = 0; s < signatures.length; s++) {
+			Signature signature = signatures[s];
+			maxLength = Math.max(maxLength, signature.length());
+			for (int i = 0, run = 0; i <= signature.length(); i++) {
+				if (i < signature.length() && !signature.isWildcard(i)) {
+					run++;
+				} else {
+					if (run > anchorLength[s]) {
+						anchorLength[s] = run;
+						anchorOffset[s] = i - run;
+					}
+					run = 0;
+				}
+			}
+			states += anchorLength[s];
+		}
+		this.maxLength = maxLength;
+
+		int[] delta = new int[states << 8];
+		Arrays.fill(delta, -1);
+		int[][] output = new int[states][];
+		int used = 1;
+		for (int s = 0; s < signatures.length; s++) {
+			int state = 0;
+			for (int i = 0; i < anchorLength[s]; i++) {
+				int edge = (state << 8) | (signatures[s].get(anchorOffset[s] + i) & 0xFF);
+				if (delta[edge] < 0)
+					delta[edge] = used++;
+				state = delta[edge];
+			}
+			output[state] = append(output[state], s);
+		}
+
+		int[] fail = new int[used];
+		int[] queue = new int[used];
+		int head = 0, tail = 0;
+		for (int b = 0; b < 256; b++) {
+			if (delta[b] < 0) {
+				delta[b] = 0;
+			} else {
+				fail[delta[b]] = 0;
+				queue[tail++] = delta[b];
+			}
+		}
+		while (head < tail) {
+			int state = queue[head++];
+			if (output[fail[state]] != null)
+				output[state] = merge(output[state], output[fail[state]]);
+			for (int b = 0; b < 256; b++) {
+				int edge = (state << 8) | b;
+				if (delta[edge] < 0) {
+					delta[edge] = delta[(fail[state] << 8) | b];
+				} else {
+					fail[delta[edge]] = delta[(fail[state] << 8) | b];
+					queue[tail++] = delta[edge];
+				}
+			}
+		}
+		this.delta = used == states ? delta : Arrays.copyOf(delta, used << 8);
+		this.output = used == states ? output : Arrays.copyOf(output, used);
+	}
+
+	public static SignatureSet compile(String... patterns) {
+		Signature[] signatures = new Signature[patterns.length];
+		for (int i = 0; i < patterns.length; i++) {
+			signatures[i] = Signature.compile(patterns[i]);
+		}
+		return new SignatureSet(signatures);
+	}
+
+	public int size() {
+		return signatures.length;
+	}
+
+	public Signature get(int index) {
+		return signatures[index];
+	}
+
+	public Matches scan(Module module) {
+		return scan(module, SignatureScanner.DEFAULT, false);
+	}
+
+	public Matches first(Module module) {
+		return scan(module, SignatureScanner.DEFAULT, true);
+	}
+
+	public Matches scan(Module module, SignatureScanner scanner, boolean firstOnly) {
+		return scan(module.process(), module.start(), module.size(), scanner, firstOnly);
+	}
+
+	/*
+	 * Matches are collected as (signature, address) pairs in address order and bucketed per signature at the end.
+	 */
+	public Matches scan(DataSource source, long start, long size, SignatureScanner scanner, boolean firstOnly) {
+		LongArrayList pairs = scanner.walk(source, start, size, maxLength - 1, (chunk, from, to, base, out) -> search(chunk, from, to, base, out, firstOnly));
+		int[] counts = new int[signatures.length];
+		for (int i = 0; i < pairs.size(); i += 2) {
+			int s = (int) pairs.getLong(i);
+			if (!firstOnly || counts[s] == 0)
+				counts[s]++;
+		}
+		long[][] matches = new long[signatures.length][];
+		for (int s = 0; s < signatures.length; s++) {
+			matches[s] = new long[counts[s]];
+			counts[s] = 0;
+		}
+		for (int i = 0; i < pairs.size(); i += 2) {
+			int s = (int) pairs.getLong(i);
+			if (counts[s] < matches[s].length)
+				matches[s][counts[s]++] = pairs.getLong(i + 1);
+		}
+		return new Matches(matches);
+	}
+
+	private void search(ByteBuffer chunk, int from, int to, long base, LongArrayList out, boolean firstOnly) {
+		boolean[] found = firstOnly ? new boolean[signatures.length] : null;
+		int limit = chunk.limit();
+		int state = 0;
+		for (int i = from; i < limit; i++) {
+			state = delta[(state << 8) | (chunk.get(i) & 0xFF)];
+			int[] hits = output[state];
+			if (hits == null)
+				continue;
+			for (int s : hits) {
+				int at = i - anchorLength[s] + 1 - anchorOffset[s];
+				if (at < from || at >= to || (found != null && found[s]))
+					continue;
+				if (signatures[s].matches(chunk, at)) {
+					out.add(s);
+					out.add(base + at);
+					if (found != null)
+						found[s] = true;
+				}
+			}
+		}
+	}
+
+	private static int[] append(int[] array, int value) {
+		if (array == null)
+			return new int[]{value};
+		int[] grown = Arrays.copyOf(array, array.length + 1);
+		grown[array.length] = value;
+		return grown;
+	}
+
+	private static int[] merge(int[] a, int[] b) {
+		if (a == null)
+			return b;
+		int[] merged = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, merged, a.length, b.length);
+		return merged;
+	}
+
+	/**
+	 * Per signature match addresses, in ascending order. Indices follow the order the signatures were given in.
+	 */
+	public static final class Matches {
+
+		private final long[][] matches;
+
+		private Matches(long[][] matches) {
+			this.matches = matches;
+		}
+
+		public long[] all(int signature) {
+			return matches[signature];
+		}
+
+		/**
+		 * @return the lowest matching address, or {@link PointerChain#INVALID} when the signature wasn't found
+		 */
+		public long first(int signature) {
+			return matches[signature].length == 0 ? PointerChain.INVALID : matches[signature][0];
+		}
+
+		public int count(int signature) {
+			return matches[signature].length;
+		}
+
+		public boolean found(int signature) {
+			return matches[signature].length > 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,230 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.misc.Strings;
+import com.sun.jna.Pointer;
+
+import java.util.Arrays;
+
+/**
+ * Reads many terminated strings at once, e.g. every entity name of a tick.
+ * <p>
+ * Strings are read in chunks that start small and grow four times per round, and never cross a page boundary,
+ * so a string that ends just before an unmapped page is still read. Each round is a single vectored read
+ * covering the next chunk of every string whose terminator hasn't been found yet; most names are done after the
+ * first round. Like {@link ReadBatch}, build it once and execute it every tick. Not thread safe.
+ */
+public final class StringBatch {
+
+	public static final int DEFAULT_LIMIT = 4096;
+
+	static final int FIRST_CHUNK = 64;
+	static final int PAGE_SIZE = 4096;
+
+	private final int limit;
+	private final Strings.Encoding encoding;
+
+	private long[] address;
+	private String[] result;
+	private int[] total;
+	private int[] scanned;
+	private int[] chunk;
+	private int[] pending;
+	private int count;
+	private int rounds;
+
+	private final ReadBatch batch = new ReadBatch();
+	private MemoryBuffer storage;
+
+	public StringBatch() {
+		this(DEFAULT_LIMIT, Strings.Encoding.UTF_8);
+	}
+
+	/**
+	 * @param limit the most bytes read for one string, terminator included
+	 */
+	public StringBatch(int limit, Strings.Encoding encoding) {
+		if (limit < encoding.unit()) {
+			throw new IllegalArgumentException("Limit " + limit + " is too small for " + encoding);
+		}
+		this.limit = limit;
+		this.encoding = encoding;
+		address = new long[16];
+		result = new String[16];
+		total = new int[16];
+		scanned = new int[16];
+		chunk = new int[16];
+		pending = new int[16];
+	}
+
+	/**
+	 * Reads one terminated string, growing the read chunk by chunk as above. Throws if nothing at {@code address}
+	 * can be read; a string cut short by an unmapped page is returned up to that page.
+	 */
+	public static String read(DataSource source, long address, int limit, Strings.Encoding encoding) {
+		MemoryBuffer buffer = source.scratchBuffer(limit);
+		long base = Pointer.nativeValue(buffer);
+		int unit = encoding.unit();
+		int total = 0, scanned = 0, chunk = FIRST_CHUNK;
+		while (total < limit) {
+			int size = chunk(address + total, chunk, limit - total);
+			try {
+				source.read(address + total, size, base + total);
+			} catch (RuntimeException e) {
+				if (total == 0)
+					throw e;
+				break;
+			}
+			total += size;
+			int end = total - total % unit;
+			int found = Strings.terminator(base + scanned, end - scanned, encoding);
+			if (found < end - scanned)
+				return Strings.decode(base, scanned + found, encoding);
+			scanned = end;
+			chunk <<= 2;
+		}
+		return Strings.decode(base, total - total % unit, encoding);
+	}
+
+	public int add(long address) {
+		if (count == this.address.length) {
+			int capacity = count << 1;
+			this.address = Arrays.copyOf(this.address, capacity);
+			result = Arrays.copyOf(result, capacity);
+			total = Arrays.copyOf(total, capacity);
+			scanned = Arrays.copyOf(scanned, capacity);
+			chunk = Arrays.copyOf(chunk, capacity);
+			pending = Arrays.copyOf(pending, capacity);
+		}
+		this.address[count] = address;
+		result[count] = null;
+		return count++;
+	}
+
+	/**
+	 * Points an existing entry at another string, e.g. when the name pointers themselves were just re-read.
+	 */
+	public void set(int index, long address) {
+		this.address[index] = address;
+	}
+
+	public int count() {
+		return count;
+	}
+
+	public long address(int index) {
+		return address[index];
+	}
+
+	/**
+	 * The string read for entry {@code index} by the last execution, or null if its address couldn't be read.
+	 */
+	public String get(int index) {
+		return result[index];
+	}
+
+	/**
+	 * Number of vectored reads the last execution took.
+	 */
+	public int rounds() {
+		return rounds;
+	}
+
+	public StringBatch execute(DataSource source) {
+		long needed = (long) count * limit;
+		if (needed > Integer.MAX_VALUE) {
+			throw new IllegalStateException(count + " strings of up to " + limit + " bytes don't fit in one buffer");
+		}
+		if (storage == null || storage.size() < needed) {
+			if (storage != null)
+				storage.free();
+			storage = new MemoryBuffer((int) Math.max(needed, limit));
+		}
+		long base = Pointer.nativeValue(storage);
+		int unit = encoding.unit();
+
+		int waiting = 0;
+		for (int i = 0; i < count; i++) {
+			result[i] = null;
+			total[i] = scanned[i] = 0;
+			chunk[i] = FIRST_CHUNK;
+			if (address[i] != 0)
+				pending[waiting++] = i;
+		}
+
+		rounds = 0;
+		while (waiting > 0) {
+			batch.clear();
+			for (int k = 0; k < waiting; k++) {
+				int i = pending[k];
+				long at = address[i] + total[i];
+				batch.add(at, chunk(at, chunk[i], limit - total[i]), base + (long) i * limit + total[i]);
+			}
+			source.read(batch);
+			rounds++;
+
+			int next = 0;
+			for (int k = 0; k < waiting; k++) {
+				int i = pending[k];
+				long string = base + (long) i * limit;
+				if (!batch.succeeded(k)) {
+					if (total[i] > 0)
+						result[i] = Strings.decode(string, total[i] - total[i] % unit, encoding);
+					continue;
+				}
+				total[i] += batch.length(k);
+				int end = total[i] - total[i] % unit;
+				int found = Strings.terminator(string + scanned[i], end - scanned[i], encoding);
+				if (found < end - scanned[i]) {
+					result[i] = Strings.decode(string, scanned[i] + found, encoding);
+				} else if (total[i] >= limit) {
+					result[i] = Strings.decode(string, end, encoding);
+				} else {
+					scanned[i] = end;
+					chunk[i] <<= 2;
+					pending[next++] = i;
+				}
+			}
+			waiting = next;
+		}
+		return this;
+	}
+
+	public void clear() {
+		Arrays.fill(result, 0, count, null);
+		count = 0;
+	}
+
+	public void free() {
+		if (storage != null) {
+			storage.free();
+			storage = null;
+		}
+		batch.free();
+	}
+
+	/*
+	 * The next chunk to read at `address`: at most `chunk` and `remaining` bytes, and never past the end of the page.
+	 */
+	static int chunk(long address, int chunk, int remaining) {
+		int page = PAGE_SIZE - (int) (address & (PAGE_SIZE - 1));
+		return Math.min(Math.min(chunk, page), remaining);
+	}
+
+}
@@ -0,0 +1,576 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.process.jfr.Flight;
+import com.sun.jna.Pointer;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongConsumer;
+
+/**
+ * Finds the addresses holding a value and narrows them down over successive scans, Cheat Engine style.
+ * <p>
+ * {@link #first} walks every readable (by default also writable) region of the process in large chunks, in
+ * parallel, and {@link #next} re-reads the surviving candidates and compares them against the value they held in
+ * the previous pass. Chunks that can't be read as a whole are retried page by page. Candidates live off-heap, one segment per chunk holding 32 bit offsets and the previous
+ * values, so a first scan with millions of hits doesn't create millions of objects. Call {@link #free()} when
+ * done. A scan is not thread safe.
+ */
+public final class ValueScan {
+
+	public enum Type {
+
+		INT(4), LONG(8), FLOAT(4), DOUBLE(8), BYTES(0);
+
+		private final int width;
+
+		Type(int width) {
+			this.width = width;
+		}
+
+		public int width() {
+			return width;
+		}
+
+		boolean floating() {
+			return this == FLOAT || this == DOUBLE;
+		}
+
+	}
+
+	public enum Condition {
+
+		EXACT, RANGE, CHANGED, UNCHANGED, INCREASED, DECREASED;
+
+		boolean relative() {
+			return this != EXACT && this != RANGE;
+		}
+
+	}
+
+	private final Process process;
+	private final Type type;
+	private int alignment;
+	private boolean writableOnly = true;
+	private double tolerance;
+	private int chunkSize = 1 << 20;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	private int width;
+	private Condition condition;
+	private long low, high;
+	// INT values compare as unsigned when a bound only fits 32 bits that way, e.g. 0xFFFFFFFFL
+	private boolean unsigned;
+	private double lowFloating, highFloating;
+	private byte[] pattern;
+
+	private Segment[] segments;
+
+	public ValueScan(Process process, Type type) {
+		if (!process.hasRegions()) {
+			throw new IllegalArgumentException("Value scans walk the memory regions of the process, which " + process.getClass().getSimpleName() + " doesn't list");
+		}
+		this.process = process;
+		this.type = type;
+		this.width = type.width();
+	}
+
+	/**
+	 * Only addresses that are a multiple of {@code alignment} are considered. Defaults to the value width, or 1
+	 * for byte arrays.
+	 */
+	public ValueScan alignment(int alignment) {
+		if (alignment <= 0) {
+			throw new IllegalArgumentException("Alignment must be positive");
+		}
+		this.alignment = alignment;
+		return this;
+	}
+
+	public ValueScan writableOnly(boolean writableOnly) {
+		this.writableOnly = writableOnly;
+		return this;
+	}
+
+	/**
+	 * Maximum difference for float and double values to count as equal.
+	 */
+	public ValueScan tolerance(double tolerance) {
+		this.tolerance = Math.abs(tolerance);
+		return this;
+	}
+
+	public ValueScan chunkSize(int chunkSize) {
+		if (chunkSize < SignatureScanner.PAGE_SIZE) {
+			throw new IllegalArgumentException("Chunk size must be at least " + SignatureScanner.PAGE_SIZE + " bytes");
+		}
+		this.chunkSize = chunkSize;
+		return this;
+	}
+
+	public ValueScan pool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	public ValueScan first(Condition condition, long value) {
+		return first(condition, value, value);
+	}
+
+	public ValueScan first(Condition condition, long low, long high) {
+		return first(condition, low, high, low, high);
+	}
+
+	public ValueScan first(Condition condition, double value) {
+		return first(condition, value, value);
+	}
+
+	public ValueScan first(Condition condition, double low, double high) {
+		return first(condition, (long) low, (long) high, low, high);
+	}
+
+	public ValueScan first(byte[] value) {
+		if (type != Type.BYTES) {
+			throw new IllegalStateException("Byte array values need a BYTES scan, this is " + type);
+		}
+		if (value.length == 0) {
+			throw new IllegalArgumentException("Empty byte array value");
+		}
+		this.pattern = value.clone();
+		this.width = value.length;
+		return first(Condition.EXACT, 0, 0, 0, 0);
+	}
+
+	public ValueScan next(Condition condition) {
+		return next(condition, 0, 0, 0, 0);
+	}
+
+	public ValueScan next(Condition condition, long value) {
+		return next(condition, value, value, value, value);
+	}
+
+	public ValueScan next(Condition condition, long low, long high) {
+		return next(condition, low, high, low, high);
+	}
+
+	public ValueScan next(Condition condition, double value) {
+		return next(condition, (long) value, (long) value, value, value);
+	}
+
+	public ValueScan next(Condition condition, double low, double high) {
+		return next(condition, (long) low, (long) high, low, high);
+	}
+
+	public ValueScan next(byte[] value) {
+		if (pattern == null || value.length != width) {
+			throw new IllegalArgumentException("Byte array value must be as long as the first one (" + width + ")");
+		}
+		this.pattern = value.clone();
+		return next(Condition.EXACT, 0, 0, 0, 0);
+	}
+
+	public long count() {
+		long count = 0;
+		if (segments != null) {
+			for (Segment segment : segments) {
+				count += segment.count;
+			}
+		}
+		return count;
+	}
+
+	public void forEach(LongConsumer action) {
+		if (segments == null)
+			return;
+		for (Segment segment : segments) {
+			for (int i = 0; i < segment.count; i++) {
+				action.accept(segment.address(i));
+			}
+		}
+	}
+
+	public long[] addresses(int limit) {
+		long[] addresses = new long[(int) Math.min(limit, count())];
+		int n = 0;
+		for (int s = 0; segments != null && s < segments.length && n < addresses.length; s++) {
+			for (int i = 0; i < segments[s].count && n < addresses.length; i++) {
+				addresses[n++] = segments[s].address(i);
+			}
+		}
+		return addresses;
+	}
+
+	public void free() {
+		if (segments != null) {
+			for (Segment segment : segments) {
+				segment.free();
+			}
+			segments = null;
+		}
+	}
+
+	private ValueScan first(Condition condition, long low, long high, double lowFloating, double highFloating) {
+		if (condition.relative()) {
+			throw new IllegalArgumentException(condition + " needs a previous scan, start with EXACT or RANGE");
+		}
+		if (type != Type.BYTES)
+			pattern = null;
+		filter(condition, low, high, lowFloating, highFloating);
+		free();
+
+		Object event = Flight.beginScan();
+		LongArrayList units = new LongArrayList();
+		RegionTable regions = process.regions();
+		for (int r = 0; r < regions.count(); r++) {
+			if (!regions.isReadable(r) || (writableOnly && !regions.isWritable(r)))
+				continue;
+			for (long start = regions.start(r); start < regions.end(r); start += chunkSize) {
+				units.add(start);
+				units.add(Math.min(start + chunkSize, regions.end(r)));
+				units.add(regions.end(r));
+			}
+		}
+		Segment[] found = new Segment[units.size() / 3];
+		pool.invoke(new FirstScan(units, found, 0, found.length));
+		segments = compact(found);
+		if (event != null) {
+			long scanned = 0;
+			for (int i = 0; i < units.size(); i += 3)
+				scanned += units.getLong(i + 1) - units.getLong(i);
+			Flight.endScan(event, "value first", process, units.isEmpty() ? 0 : units.getLong(0), scanned, count());
+		}
+		return this;
+	}
+
+	private ValueScan next(Condition condition, long low, long high, double lowFloating, double highFloating) {
+		if (segments == null) {
+			throw new IllegalStateException("next() needs a previous first() scan");
+		}
+		filter(condition, low, high, lowFloating, highFloating);
+		Object event = Flight.beginScan();
+		long candidates = event != null ? count() : 0;
+		pool.invoke(new NextScan(segments, 0, segments.length));
+		segments = compact(segments);
+		Flight.endScan(event, "value next", process, 0, candidates * width, count());
+		return this;
+	}
+
+	private void filter(Condition condition, long low, long high, double lowFloating, double highFloating) {
+		if (type == Type.BYTES && (condition == Condition.RANGE || condition == Condition.INCREASED || condition == Condition.DECREASED)) {
+			throw new IllegalArgumentException(condition + " is not supported for byte array values");
+		}
+		if (type == Type.BYTES && condition == Condition.EXACT && pattern == null) {
+			throw new IllegalArgumentException("Byte array scans take their value with first(byte[]) or next(byte[])");
+		}
+		this.condition = condition;
+		this.low = low;
+		this.high = high;
+		if (!condition.relative())
+			unsigned = type == Type.INT && (low > Integer.MAX_VALUE || high > Integer.MAX_VALUE);
+		this.lowFloating = lowFloating;
+		this.highFloating = highFloating;
+		if (alignment == 0)
+			alignment = type == Type.BYTES ? 1 : width;
+	}
+
+	private static Segment[] compact(Segment[] segments) {
+		int n = 0;
+		for (Segment segment : segments) {
+			if (segment == null)
+				continue;
+			if (segment.count == 0) {
+				segment.free();
+			} else {
+				segments[n++] = segment;
+			}
+		}
+		return Arrays.copyOf(segments, n);
+	}
+
+	private boolean test(ByteBuffer current, int at, ByteBuffer previous, int prev) {
+		switch (type) {
+			case BYTES:
+				ByteBuffer other = condition == Condition.EXACT ? null : previous;
+				boolean equal = true;
+				for (int i = 0; i < width && equal; i++) {
+					equal = current.get(at + i) == (other == null ? pattern[i] : other.get(prev + i));
+				}
+				return condition == Condition.CHANGED ? !equal : equal;
+			case FLOAT:
+			case DOUBLE:
+				double value = type == Type.FLOAT ? current.getFloat(at) : current.getDouble(at);
+				double old = !condition.relative() ? 0 : type == Type.FLOAT ? previous.getFloat(prev) : previous.getDouble(prev);
+				switch (condition) {
+					case EXACT:
+						return Math.abs(value - lowFloating) <= tolerance;
+					case RANGE:
+						return value >= lowFloating && value <= highFloating;
+					case CHANGED:
+						return !(Math.abs(value - old) <= tolerance);
+					case UNCHANGED:
+						return Math.abs(value - old) <= tolerance;
+					case INCREASED:
+						return value > old + tolerance;
+					default:
+						return value < old - tolerance;
+				}
+			default:
+				long v = type == Type.INT ? integer(current.getInt(at)) : current.getLong(at);
+				long o = !condition.relative() ? 0 : type == Type.INT ? integer(previous.getInt(prev)) : previous.getLong(prev);
+				switch (condition) {
+					case EXACT:
+						return v == low;
+					case RANGE:
+						return v >= low && v <= high;
+					case CHANGED:
+						return v != o;
+					case UNCHANGED:
+						return v == o;
+					case INCREASED:
+						return v > o;
+					default:
+						return v < o;
+				}
+		}
+	}
+
+	private long integer(int value) {
+		return unsigned ? Integer.toUnsignedLong(value) : value;
+	}
+
+	private static ByteBuffer view(MemoryBuffer buffer, int length) {
+		return buffer.getByteBuffer(0, length).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private final class FirstScan extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final LongArrayList units;
+		private final Segment[] found;
+		private final int from, to;
+
+		FirstScan(LongArrayList units, Segment[] found, int from, int to) {
+			this.units = units;
+			this.found = found;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new FirstScan(units, found, from, mid), new FirstScan(units, found, mid, to));
+				return;
+			}
+			if (from >= to)
+				return;
+			long start = units.getLong(from * 3), end = units.getLong(from * 3 + 1), limit = units.getLong(from * 3 + 2);
+			int length = (int) (Math.min(end + width - 1, limit) - start);
+			MemoryBuffer buffer = new MemoryBuffer(length);
+			try {
+				boolean[] readable = null;
+				try {
+					process.read(start, length, Pointer.nativeValue(buffer));
+				} catch (RuntimeException e) {
+					readable = readPages(start, length, buffer);
+				}
+				ByteBuffer chunk = view(buffer, length);
+				Segment segment = null;
+				long first = (start + alignment - 1) / alignment * alignment;
+				for (int at = (int) (first - start); at < end - start && at + width <= length; at += alignment) {
+					if (readable != null && !(readable[page(start, at)] && readable[page(start, at + width - 1)]))
+						continue;
+					if (test(chunk, at, null, 0)) {
+						if (segment == null)
+							segment = new Segment(start, width);
+						segment.add(at, chunk);
+					}
+				}
+				found[from] = segment;
+			} finally {
+				buffer.free();
+			}
+		}
+
+		/*
+		 * Reads a chunk that couldn't be read as a whole page by page, and returns which of its pages made it.
+		 */
+		private boolean[] readPages(long start, int length, MemoryBuffer buffer) {
+			boolean[] readable = new boolean[page(start, length - 1) + 1];
+			for (int offset = 0; offset < length; ) {
+				long address = start + offset;
+				int size = (int) Math.min(SignatureScanner.PAGE_SIZE - (address & (SignatureScanner.PAGE_SIZE - 1)), length - offset);
+				try {
+					process.read(address, size, Pointer.nativeValue(buffer) + offset);
+					readable[page(start, offset)] = true;
+				} catch (RuntimeException e) {
+					// leave the page out
+				}
+				offset += size;
+			}
+			return readable;
+		}
+
+		private int page(long start, int offset) {
+			return (int) ((start + offset) / SignatureScanner.PAGE_SIZE - start / SignatureScanner.PAGE_SIZE);
+		}
+
+	}
+
+	private final class NextScan extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Segment[] segments;
+		private final int from, to;
+
+		NextScan(Segment[] segments, int from, int to) {
+			this.segments = segments;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new NextScan(segments, from, mid), new NextScan(segments, mid, to));
+				return;
+			}
+			if (from >= to)
+				return;
+			Segment segment = segments[from];
+			int first = segment.offset(0);
+			int length = segment.offset(segment.count - 1) + width - first;
+			MemoryBuffer buffer = new MemoryBuffer(length);
+			try {
+				ByteBuffer span = view(buffer, length);
+				ReadBatch batch = null;
+				try {
+					process.read(segment.base + first, length, Pointer.nativeValue(buffer));
+				} catch (RuntimeException e) {
+					// part of the span went away, fetch the candidates one by one without failing on each
+					batch = new ReadBatch(segment.count);
+					for (int i = 0; i < segment.count; i++) {
+						batch.add(segment.address(i), width, buffer, segment.offset(i) - first);
+					}
+					process.read(batch);
+				}
+				int kept = 0;
+				for (int i = 0; i < segment.count; i++) {
+					int at = segment.offset(i) - first;
+					if ((batch == null || batch.succeeded(i)) && test(span, at, segment.values, i * width)) {
+						segment.set(kept++, segment.offset(i), span, at);
+					}
+				}
+				segment.count = kept;
+				if (batch != null)
+					batch.free();
+			} finally {
+				buffer.free();
+			}
+		}
+
+	}
+
+	/*
+	 * Candidates of one chunk: offsets from `base` and the value each one held at the last scan.
+	 */
+	private static final class Segment {
+
+		private final long base;
+		private final int width;
+		private int count;
+		private int capacity = 256;
+		private MemoryBuffer offsetMemory;
+		private MemoryBuffer valueMemory;
+		private ByteBuffer offsets;
+		private ByteBuffer values;
+
+		Segment(long base, int width) {
+			this.base = base;
+			this.width = width;
+			offsetMemory = new MemoryBuffer(capacity * 4);
+			valueMemory = new MemoryBuffer(capacity * width);
+			offsets = view(offsetMemory, capacity * 4);
+			values = view(valueMemory, capacity * width);
+		}
+
+		int offset(int index) {
+			return offsets.getInt(index << 2);
+		}
+
+		long address(int index) {
+			return base + offset(index);
+		}
+
+		void add(int offset, ByteBuffer source) {
+			if (count == capacity)
+				grow();
+			set(count++, offset, source, offset);
+		}
+
+		void set(int index, int offset, ByteBuffer source, int at) {
+			offsets.putInt(index << 2, offset);
+			int to = index * width;
+			switch (width) {
+				case 4:
+					values.putInt(to, source.getInt(at));
+					break;
+				case 8:
+					values.putLong(to, source.getLong(at));
+					break;
+				default:
+					for (int i = 0; i < width; i++) {
+						values.put(to + i, source.get(at + i));
+					}
+			}
+		}
+
+		private void grow() {
+			int capacity = this.capacity << 1;
+			MemoryBuffer offsetMemory = new MemoryBuffer(capacity * 4);
+			MemoryBuffer valueMemory = new MemoryBuffer(capacity * width);
+			ByteBuffer offsets = view(offsetMemory, capacity * 4);
+			ByteBuffer values = view(valueMemory, capacity * width);
+			offsets.put((ByteBuffer) this.offsets.duplicate().limit(count * 4)).clear();
+			values.put((ByteBuffer) this.values.duplicate().limit(count * width)).clear();
+			free();
+			this.capacity = capacity;
+			this.offsetMemory = offsetMemory;
+			this.valueMemory = valueMemory;
+			this.offsets = offsets;
+			this.values = values;
+		}
+
+		void free() {
+			offsetMemory.free();
+			valueMemory.free();
+		}
+
+	}
+
+}
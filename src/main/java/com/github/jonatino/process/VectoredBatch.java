@@ -0,0 +1,279 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.sun.jna.Pointer;
+
+import java.util.Arrays;
+
+/**
+ * Bookkeeping shared by {@link ReadBatch} and {@link WriteBatch}: a list of (remote, local, length) entries
+ * that a {@link DataSource} turns into one vectored call per {@link #IOV_MAX} entries, plus the success flag
+ * of each entry once the batch ran.
+ * <p>
+ * An entry that couldn't be transferred is marked failed, whatever the backend. When the process couldn't be
+ * reached at all, every entry is and {@link #errno()} says why. The public accessors past {@link #errno()} are
+ * meant for {@link DataSource} implementations.
+ */
+public abstract class VectoredBatch {
+
+	public static final int IOV_MAX = 1024;
+
+	/**
+	 * Size of an entry of {@link #descriptors()}: local address, remote address, length and bytes transferred.
+	 */
+	public static final int DESCRIPTOR_SIZE = 32;
+
+	private static final int IOVEC_SIZE = 16;
+
+	private long[] remote;
+	private long[] local;
+	private int[] length;
+	private boolean[] succeeded;
+	private int count;
+	private int errno;
+
+	private MemoryBuffer remoteIov;
+	private MemoryBuffer localIov;
+	private boolean iovDirty = true;
+
+	private MemoryBuffer descriptors;
+	private boolean descriptorsDirty = true;
+
+	protected VectoredBatch(int capacity) {
+		capacity = Math.max(capacity, 1);
+		remote = new long[capacity];
+		local = new long[capacity];
+		length = new int[capacity];
+		succeeded = new boolean[capacity];
+	}
+
+	protected int entry(long address, int size, long local) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Negative size " + size + " at address " + Module.hex(address));
+		}
+		if (count == remote.length) {
+			int capacity = count << 1;
+			remote = Arrays.copyOf(remote, capacity);
+			this.local = Arrays.copyOf(this.local, capacity);
+			length = Arrays.copyOf(length, capacity);
+			succeeded = Arrays.copyOf(succeeded, capacity);
+		}
+		remote[count] = address;
+		this.local[count] = local;
+		length[count] = size;
+		succeeded[count] = false;
+		iovDirty = descriptorsDirty = true;
+		return count++;
+	}
+
+	/*
+	 * Moves every local address by `delta`, for batches whose local side lives in a buffer that was reallocated.
+	 */
+	protected void rebase(long delta) {
+		for (int i = 0; i < count; i++) {
+			local[i] += delta;
+		}
+		iovDirty = descriptorsDirty = true;
+	}
+
+	public int count() {
+		return count;
+	}
+
+	public long address(int index) {
+		return remote[index];
+	}
+
+	public int length(int index) {
+		return length[index];
+	}
+
+	public long local(int index) {
+		return local[index];
+	}
+
+	public boolean succeeded(int index) {
+		return succeeded[index];
+	}
+
+	public int succeeded() {
+		int succeeded = 0;
+		for (int i = 0; i < count; i++) {
+			if (this.succeeded[i])
+				succeeded++;
+		}
+		return succeeded;
+	}
+
+	public boolean complete() {
+		return succeeded() == count;
+	}
+
+	/**
+	 * The errno that failed the last run of this batch as a whole, such as ESRCH once the process exited or EPERM
+	 * without access to it, or 0. Backends that can't tell the cause leave it 0.
+	 */
+	public int errno() {
+		return errno;
+	}
+
+	public void clear() {
+		count = 0;
+		iovDirty = descriptorsDirty = true;
+	}
+
+	public void free() {
+		releaseIovecs();
+		if (descriptors != null) {
+			descriptors.free();
+			descriptors = null;
+		}
+		descriptorsDirty = true;
+	}
+
+	private void releaseIovecs() {
+		if (remoteIov != null) {
+			remoteIov.free();
+			localIov.free();
+			remoteIov = localIov = null;
+		}
+		iovDirty = true;
+	}
+
+	public void reset() {
+		Arrays.fill(succeeded, 0, count, false);
+		errno = 0;
+	}
+
+	public void mark(int index, boolean success) {
+		succeeded[index] = success;
+	}
+
+	/*
+	 * Marks every entry failed because the process couldn't be reached, for `errno`.
+	 */
+	public void fail(int errno) {
+		Arrays.fill(succeeded, 0, count, false);
+		this.errno = errno;
+	}
+
+	/*
+	 * Marks every entry in [from, to) that lies entirely within the first `transferred` bytes as done and
+	 * returns the index of the first entry that wasn't, or `to` when the whole range went through.
+	 */
+	public int settle(int from, int to, long transferred) {
+		int i = from;
+		for (; i < to && transferred >= length[i]; i++) {
+			transferred -= length[i];
+			succeeded[i] = true;
+		}
+		return i;
+	}
+
+	public int chunks() {
+		return (count + IOV_MAX - 1) / IOV_MAX;
+	}
+
+	public int chunkStart(int chunk) {
+		return chunk * IOV_MAX;
+	}
+
+	public int chunkEnd(int chunk) {
+		return Math.min(count, (chunk + 1) * IOV_MAX);
+	}
+
+	/*
+	 * Address of a native table with one descriptor of four longs per entry: local address, remote address, length,
+	 * and the number of bytes transferred, which the native side fills in. Lets a reused batch go through
+	 * unixc.mem_readv/mem_writev with one JNI call and no array copies.
+	 */
+	public long descriptors() {
+		buildDescriptors();
+		return Pointer.nativeValue(descriptors);
+	}
+
+	/*
+	 * Bytes the last native call recorded as transferred for entry `index` of the descriptor table.
+	 */
+	public long transferred(int index) {
+		return descriptors.getLong((long) index * DESCRIPTOR_SIZE + 24);
+	}
+
+	/*
+	 * Marks every entry that the descriptor table records as transferred in full as done.
+	 */
+	public void settleDescriptors() {
+		for (int i = 0; i < count; i++) {
+			succeeded[i] = transferred(i) == length[i];
+		}
+	}
+
+	/*
+	 * Address of the native struct iovec describing entry `index` on the remote/local side. Both tables are
+	 * contiguous, so a vectored call can start at any entry.
+	 */
+	public long remoteIovec(int index) {
+		buildIovecs();
+		return Pointer.nativeValue(remoteIov) + (long) index * IOVEC_SIZE;
+	}
+
+	public long localIovec(int index) {
+		buildIovecs();
+		return Pointer.nativeValue(localIov) + (long) index * IOVEC_SIZE;
+	}
+
+	private void buildDescriptors() {
+		if (!descriptorsDirty)
+			return;
+		int capacity = remote.length * DESCRIPTOR_SIZE;
+		if (descriptors == null || descriptors.size() < capacity) {
+			if (descriptors != null)
+				descriptors.free();
+			descriptors = new MemoryBuffer(capacity);
+		}
+		for (int i = 0; i < count; i++) {
+			long offset = (long) i * DESCRIPTOR_SIZE;
+			descriptors.setLong(offset, local[i]);
+			descriptors.setLong(offset + 8, remote[i]);
+			descriptors.setLong(offset + 16, length[i]);
+			descriptors.setLong(offset + 24, 0);
+		}
+		descriptorsDirty = false;
+	}
+
+	private void buildIovecs() {
+		if (!iovDirty)
+			return;
+		int capacity = remote.length * IOVEC_SIZE;
+		if (remoteIov == null || remoteIov.size() < capacity) {
+			releaseIovecs();
+			remoteIov = new MemoryBuffer(capacity);
+			localIov = new MemoryBuffer(capacity);
+		}
+		for (int i = 0; i < count; i++) {
+			long offset = (long) i * IOVEC_SIZE;
+			remoteIov.setLong(offset, remote[i]);
+			remoteIov.setLong(offset + 8, length[i]);
+			localIov.setLong(offset, local[i]);
+			localIov.setLong(offset + 8, length[i]);
+		}
+		iovDirty = false;
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.sun.jna.Pointer;
+
+/**
+ * Typed writes staged into a single off-heap buffer and flushed with one vectored call per {@link #IOV_MAX}
+ * entries. Each put returns the index of its entry, whose outcome can be checked with {@link #succeeded(int)}
+ * after {@link #flush(DataSource)}.
+ * <p>
+ * {@link #clear()} keeps the staging memory around, so a batch reused every frame creates no garbage.
+ * A batch is not thread safe.
+ */
+public final class WriteBatch extends VectoredBatch {
+
+	private MemoryBuffer staging;
+	private int position;
+
+	public WriteBatch() {
+		this(16, 256);
+	}
+
+	public WriteBatch(int capacity, int stagingSize) {
+		super(capacity);
+		staging = new MemoryBuffer(Math.max(stagingSize, 8));
+	}
+
+	public int putBoolean(long address, boolean value) {
+		return putByte(address, value ? 1 : 0);
+	}
+
+	public int putByte(long address, int value) {
+		int offset = stage(1);
+		staging.setByte(offset, (byte) value);
+		return entry(address, 1, Pointer.nativeValue(staging) + offset);
+	}
+
+	public int putShort(long address, int value) {
+		int offset = stage(2);
+		staging.setShort(offset, (short) value);
+		return entry(address, 2, Pointer.nativeValue(staging) + offset);
+	}
+
+	public int putInt(long address, int value) {
+		int offset = stage(4);
+		staging.setInt(offset, value);
+		return entry(address, 4, Pointer.nativeValue(staging) + offset);
+	}
+
+	public int putLong(long address, long value) {
+		int offset = stage(8);
+		staging.setLong(offset, value);
+		return entry(address, 8, Pointer.nativeValue(staging) + offset);
+	}
+
+	public int putFloat(long address, float value) {
+		int offset = stage(4);
+		staging.setFloat(offset, value);
+		return entry(address, 4, Pointer.nativeValue(staging) + offset);
+	}
+
+	public int putDouble(long address, double value) {
+		int offset = stage(8);
+		staging.setDouble(offset, value);
+		return entry(address, 8, Pointer.nativeValue(staging) + offset);
+	}
+
+	public int put(long address, byte[] data) {
+		int offset = stage(data.length);
+		staging.write(offset, data, 0, data.length);
+		return entry(address, data.length, Pointer.nativeValue(staging) + offset);
+	}
+
+	public int put(long address, MemoryBuffer data) {
+		int offset = stage(data.size());
+		staging.setBytes(offset, data, data.size());
+		return entry(address, data.size(), Pointer.nativeValue(staging) + offset);
+	}
+
+	public WriteBatch flush(DataSource target) {
+		return target.write(this);
+	}
+
+	public int staged() {
+		return position;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		position = 0;
+	}
+
+	@Override
+	public void free() {
+		super.free();
+		staging.free();
+	}
+
+	private int stage(int size) {
+		if (position + size > staging.size()) {
+			int capacity = staging.size();
+			while (position + size > capacity) {
+				capacity <<= 1;
+			}
+			MemoryBuffer grown = new MemoryBuffer(capacity);
+			grown.setBytes(0, staging, position);
+			rebase(Pointer.nativeValue(grown) - Pointer.nativeValue(staging));
+			staging.free();
+			staging = grown;
+		}
+		int offset = position;
+		position += size;
+		return offset;
+	}
+
+}
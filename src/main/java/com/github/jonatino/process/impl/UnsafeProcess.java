@@ -19,30 +19,29 @@ package com.github.jonatino.process.impl;
 import com.github.jonatino.misc.Cacheable;
 import com.github.jonatino.misc.MemoryBuffer;
 import com.github.jonatino.misc.Strings;
+import com.github.jonatino.misc.Unsafes;
+import com.github.jonatino.misc.Utils;
 import com.github.jonatino.natives.unix.CLink;
 import com.github.jonatino.process.AbstractProcess;
 import com.github.jonatino.process.Module;
 import com.github.jonatino.process.Process;
+import com.github.jonatino.process.ReadBatch;
+import com.github.jonatino.process.RegionTable;
+import com.github.jonatino.process.WriteBatch;
+import com.github.jonatino.process.impl.unix.ProcMaps;
 import com.sun.jna.Pointer;
 
-import java.lang.reflect.Field;
 import sun.misc.Unsafe;
 
 public final class UnsafeProcess extends AbstractProcess {
 
-	private static final Unsafe unsafe;
-	static {
-		try {
-			Field field = Unsafe.class.getDeclaredField("theUnsafe");
-			field.setAccessible(true);
-			unsafe = (Unsafe) field.get(null);
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}
-	}
+	private static final Unsafe unsafe = Unsafes.UNSAFE;
+
+	private final ProcMaps maps;
 
 	public UnsafeProcess(int id) {
 		super(id);
+		this.maps = new ProcMaps(id);
 	}
 
 	@Override
@@ -62,6 +61,16 @@ public final class UnsafeProcess extends AbstractProcess {
 		CLink.INSTANCE.dl_iterate_phdr(callback, 0);
 	}
 
+	@Override
+	public boolean hasRegions() {
+		return true;
+	}
+
+	@Override
+	public RegionTable regions() {
+		return maps.regions();
+	}
+
 	@Override
 	public MemoryBuffer read(long address, int size) {
 		MemoryBuffer buffer = Cacheable.buffer(size);
@@ -74,12 +83,30 @@ public final class UnsafeProcess extends AbstractProcess {
 		unsafe.copyMemory(address, target, size);
 	}
 
+	@Override
+	public ReadBatch read(ReadBatch batch) {
+		for (int i = 0; i < batch.count(); i++) {
+			unsafe.copyMemory(batch.address(i), batch.target(i), batch.length(i));
+			batch.mark(i, true);
+		}
+		return batch;
+	}
+
 	@Override
 	public Process write(Pointer address, MemoryBuffer buffer) throws com.sun.jna.LastErrorException {
 		unsafe.copyMemory(Pointer.nativeValue(address), Pointer.nativeValue(buffer), buffer.size());
 		return this;
 	}
 
+	@Override
+	public WriteBatch write(WriteBatch batch) {
+		for (int i = 0; i < batch.count(); i++) {
+			unsafe.copyMemory(batch.local(i), batch.address(i), batch.length(i));
+			batch.mark(i, true);
+		}
+		return batch;
+	}
+
 	@Override
 	public boolean readBoolean(long address) {
 		return unsafe.getByte(address) > 1;
@@ -121,10 +148,8 @@ public final class UnsafeProcess extends AbstractProcess {
 	}
 
 	@Override
-	public String readString(long address, int length) {
-		byte[] bytes = Cacheable.array(length);
-		Cacheable.pointer(address).read(0, bytes, 0, length);
-		return Strings.transform(bytes);
+	public String readString(long address, int length, Strings.Encoding encoding) {
+		return Strings.decode(address, length, encoding);
 	}
 
 	@Override
@@ -132,6 +157,36 @@ public final class UnsafeProcess extends AbstractProcess {
 		return unsafe.getLong(address);
 	}
 
+	@Override
+	public byte[] readBytes(long address, byte[] dst, int off, int len) {
+		unsafe.copyMemory(null, address, dst, Unsafe.ARRAY_BYTE_BASE_OFFSET + off, Utils.arrayBytes(dst.length, off, len, 1));
+		return dst;
+	}
+
+	@Override
+	public int[] readInts(long address, int[] dst, int off, int len) {
+		unsafe.copyMemory(null, address, dst, Unsafe.ARRAY_INT_BASE_OFFSET + ((long) off << 2), Utils.arrayBytes(dst.length, off, len, 4));
+		return dst;
+	}
+
+	@Override
+	public long[] readLongs(long address, long[] dst, int off, int len) {
+		unsafe.copyMemory(null, address, dst, Unsafe.ARRAY_LONG_BASE_OFFSET + ((long) off << 3), Utils.arrayBytes(dst.length, off, len, 8));
+		return dst;
+	}
+
+	@Override
+	public float[] readFloats(long address, float[] dst, int off, int len) {
+		unsafe.copyMemory(null, address, dst, Unsafe.ARRAY_FLOAT_BASE_OFFSET + ((long) off << 2), Utils.arrayBytes(dst.length, off, len, 4));
+		return dst;
+	}
+
+	@Override
+	public double[] readDoubles(long address, double[] dst, int off, int len) {
+		unsafe.copyMemory(null, address, dst, Unsafe.ARRAY_DOUBLE_BASE_OFFSET + ((long) off << 3), Utils.arrayBytes(dst.length, off, len, 8));
+		return dst;
+	}
+
 	@Override
 	public Process writeBoolean(long address, boolean value) {
 		unsafe.putByte(address, value ? (byte) 1 : (byte) 0);
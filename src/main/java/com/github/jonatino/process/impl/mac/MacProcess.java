@@ -58,7 +58,8 @@ public final class MacProcess extends AbstractProcess {
 
 	@Override
 	public void read(long address, int size, long buffer) {
-		if (mac.vm_read(task(), Cacheable.pointer(address), size, Cacheable.pointer(buffer), INT_BY_REF) != 0 || INT_BY_REF.getValue() != size) {
+		long[] read = new long[1];
+		if (mac.vm_read_overwrite(task(), address, size, buffer, read) != 0 || read[0] != size) {
 			throw new RuntimeException("Read memory failed at address " + address + " size " + size);
 		}
 	}
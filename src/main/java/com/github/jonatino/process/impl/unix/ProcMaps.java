@@ -0,0 +1,300 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process.impl.unix;
+
+import com.github.jonatino.process.Module;
+import com.github.jonatino.process.Process;
+import com.github.jonatino.process.RegionTable;
+import com.sun.jna.Pointer;
+import it.unimi.dsi.fastutil.objects.Object2ObjectArrayMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Reads /proc/&lt;pid&gt;/maps into a {@link RegionTable}.
+ * <p>
+ * The file is parsed byte by byte out of one reused buffer, and paths are interned, so once every path has been
+ * seen a {@link #refresh()} creates no garbage unless the mappings changed. When they didn't, the previous table
+ * is kept, and {@link #table()} keeps returning the same instance; a table handed out is never modified. When
+ * they did, modules whose mappings are unchanged keep their {@link Module} instance.
+ */
+public final class ProcMaps {
+
+	private final Path path;
+	private final byte[] buffer = new byte[64 << 10];
+	private final ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+	private final RegionTable scratch = new RegionTable(256);
+
+	private RegionTable table = new RegionTable(1);
+	private int generation;
+	// the table the last map of modules was built from
+	private RegionTable modulesTable;
+
+	// interned paths, open addressing on the hash of their bytes
+	private byte[][] internedBytes = new byte[256][];
+	private String[] interned = new String[256];
+	private int internedCount;
+
+	public ProcMaps(int pid) {
+		this.path = Paths.get("/proc/" + pid + "/maps");
+	}
+
+	/**
+	 * Refreshes, then returns the latest table.
+	 */
+	public synchronized RegionTable regions() {
+		refresh();
+		return table;
+	}
+
+	/**
+	 * The latest table, parsing the file the first time.
+	 */
+	public synchronized RegionTable table() {
+		if (generation == 0)
+			refresh();
+		return table;
+	}
+
+	/**
+	 * Incremented every time a refresh finds the mappings changed.
+	 */
+	public synchronized int generation() {
+		return generation;
+	}
+
+	/**
+	 * Parses the file again.
+	 *
+	 * @return whether the mappings changed since the last refresh
+	 */
+	public synchronized boolean refresh() {
+		scratch.clear();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			int length = 0;
+			while (true) {
+				wrapper.limit(buffer.length).position(length);
+				int read = channel.read(wrapper);
+				if (read <= 0)
+					break;
+				length += read;
+				int consumed = parse(length, false);
+				System.arraycopy(buffer, consumed, buffer, 0, length - consumed);
+				length -= consumed;
+			}
+			parse(length, true);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to read " + path, e);
+		}
+		if (generation > 0 && scratch.same(table))
+			return false;
+		table = scratch.copy();
+		generation++;
+		return true;
+	}
+
+	/**
+	 * Refreshes, and returns {@code current} as is if the mappings didn't change since it was built, or a new map
+	 * of modules otherwise.
+	 */
+	public synchronized Map<String, Module> modules(Process process, Map<String, Module> current) {
+		refresh();
+		return modules(process, table, current);
+	}
+
+	/**
+	 * Returns {@code current} as is if it was built from {@code table}, or a new map of the modules of
+	 * {@code table} otherwise, in which every module that still spans the same memory is the instance from
+	 * {@code current}.
+	 */
+	public synchronized Map<String, Module> modules(Process process, RegionTable table, Map<String, Module> current) {
+		if (modulesTable == table && !current.isEmpty())
+			return current;
+		Map<String, Module> modules = new Object2ObjectArrayMap<>();
+		collect(process, table, modules);
+		if (!current.isEmpty()) {
+			for (String name : modules.keySet().toArray(new String[modules.size()])) {
+				Module previous = current.get(name), module = modules.get(name);
+				if (previous != null && previous.process() == process && previous.start() == module.start() && previous.size() == module.size()
+						&& previous.permissions().equals(module.permissions()))
+					modules.put(name, previous);
+			}
+		}
+		modulesTable = table;
+		return modules;
+	}
+
+	/*
+	 * Fills `modules` with the readable, executable file mappings of the table, one module per file name spanning
+	 * from its first mapping to the end of its last executable one. Anonymous executable mappings that follow a
+	 * module are taken to belong to it and skipped.
+	 */
+	private static void collect(Process process, RegionTable table, Map<String, Module> modules) {
+		String previous = "";
+		for (int i = 0; i < table.count(); i++) {
+			if (!table.isReadable(i) || !table.isExecutable(i))
+				continue;
+			String path = table.path(i);
+			String name = path.substring(path.lastIndexOf('/') + 1);
+			if (name.isEmpty() && !previous.isEmpty())
+				continue;
+			Module module = modules.get(name);
+			long start = module != null && module.start() < table.start(i) ? module.start() : table.start(i);
+			modules.put(name, new Module(process, name, Pointer.createConstant(start), table.end(i) - start, table.permissions(i)));
+			if (!name.isEmpty())
+				previous = name;
+		}
+	}
+
+	/*
+	 * Parses every complete line in buffer[0, length), or the trailing partial one too when `last`, and returns how
+	 * many bytes were consumed.
+	 */
+	private int parse(int length, boolean last) {
+		int line = 0;
+		while (line < length) {
+			int eol = line;
+			while (eol < length && buffer[eol] != '\n')
+				eol++;
+			if (eol == length && !last)
+				break;
+			parseLine(line, eol);
+			line = eol + 1;
+		}
+		if (line == 0 && length == buffer.length)
+			throw new IllegalStateException("Line longer than " + buffer.length + " bytes in " + path);
+		return Math.min(line, length);
+	}
+
+	// start-end perms offset major:minor inode [path]
+	private void parseLine(int at, int eol) {
+		long start = 0, end = 0, offset = 0, major = 0, minor = 0, inode = 0;
+		int digits;
+
+		for (digits = 0; at < eol && hex(buffer[at]) >= 0; at++, digits++)
+			start = start << 4 | hex(buffer[at]);
+		if (digits == 0 || at >= eol || buffer[at++] != '-')
+			return;
+		for (digits = 0; at < eol && hex(buffer[at]) >= 0; at++, digits++)
+			end = end << 4 | hex(buffer[at]);
+		if (digits == 0 || at + 5 >= eol || buffer[at++] != ' ')
+			return;
+
+		int flags = 0;
+		if (buffer[at] == 'r')
+			flags |= RegionTable.READ;
+		if (buffer[at + 1] == 'w')
+			flags |= RegionTable.WRITE;
+		if (buffer[at + 2] == 'x')
+			flags |= RegionTable.EXECUTE;
+		if (buffer[at + 3] == 's')
+			flags |= RegionTable.SHARED;
+		at += 5;
+
+		for (; at < eol && hex(buffer[at]) >= 0; at++)
+			offset = offset << 4 | hex(buffer[at]);
+		at++;
+		for (; at < eol && hex(buffer[at]) >= 0; at++)
+			major = major << 4 | hex(buffer[at]);
+		at++;
+		for (; at < eol && hex(buffer[at]) >= 0; at++)
+			minor = minor << 4 | hex(buffer[at]);
+		at++;
+		for (; at < eol && buffer[at] >= '0' && buffer[at] <= '9'; at++)
+			inode = inode * 10 + (buffer[at] - '0');
+		while (at < eol && buffer[at] == ' ')
+			at++;
+
+		scratch.add(start, end, flags, offset, device(major, minor), inode, intern(at, eol - at));
+	}
+
+	private String intern(int from, int length) {
+		if (length == 0)
+			return "";
+		int hash = 0;
+		for (int i = from; i < from + length; i++)
+			hash = 31 * hash + buffer[i];
+		int mask = interned.length - 1;
+		for (int slot = (hash ^ hash >>> 16) & mask; ; slot = (slot + 1) & mask) {
+			byte[] bytes = internedBytes[slot];
+			if (bytes == null) {
+				String path = new String(buffer, from, length, StandardCharsets.UTF_8);
+				internedBytes[slot] = Arrays.copyOfRange(buffer, from, from + length);
+				interned[slot] = path;
+				if (++internedCount > interned.length >> 1)
+					rehash();
+				return path;
+			}
+			if (bytes.length == length && equals(bytes, from))
+				return interned[slot];
+		}
+	}
+
+	private boolean equals(byte[] bytes, int from) {
+		for (int i = 0; i < bytes.length; i++) {
+			if (bytes[i] != buffer[from + i])
+				return false;
+		}
+		return true;
+	}
+
+	private void rehash() {
+		byte[][] oldBytes = internedBytes;
+		String[] old = interned;
+		internedBytes = new byte[old.length << 1][];
+		interned = new String[old.length << 1];
+		int mask = interned.length - 1;
+		for (int i = 0; i < old.length; i++) {
+			if (oldBytes[i] == null)
+				continue;
+			int hash = 0;
+			for (byte b : oldBytes[i])
+				hash = 31 * hash + b;
+			int slot = (hash ^ hash >>> 16) & mask;
+			while (internedBytes[slot] != null)
+				slot = (slot + 1) & mask;
+			internedBytes[slot] = oldBytes[i];
+			interned[slot] = old[i];
+		}
+	}
+
+	private static int hex(byte b) {
+		if (b >= '0' && b <= '9')
+			return b - '0';
+		if (b >= 'a' && b <= 'f')
+			return b - 'a' + 10;
+		if (b >= 'A' && b <= 'F')
+			return b - 'A' + 10;
+		return -1;
+	}
+
+	/*
+	 * glibc's makedev, so the result compares equal to st_dev and the "unix:dev" file attribute.
+	 */
+	static long device(long major, long minor) {
+		return (major & 0xfff) << 8 | (major & ~0xfffL) << 32 | (minor & 0xff) | (minor & ~0xffL) << 12;
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.jonatino.process.impl.unix;
+
+import com.sun.jna.Native;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Native blocks holding a local struct iovec, a remote struct iovec and an 8 byte value slot, for single
+ * transfers. A few blocks are shared by every thread: one is taken with a CAS on its slot and put back after the
+ * call, so the memory doesn't grow with the number of threads that ever read and a reader may move between
+ * threads. When every slot is taken the call gets a block of its own, freed when it is put back.
+ */
+final class TransferBlocks {
+
+	static final int IOVEC_SIZE = 16;
+	static final int LOCAL = 0;
+	static final int REMOTE = IOVEC_SIZE;
+	static final int VALUE = IOVEC_SIZE * 2;
+	static final int SIZE = VALUE + 8;
+
+	private static final int SLOTS = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+	// 0 while the block of the slot is taken
+	private static final AtomicLongArray slots = new AtomicLongArray(SLOTS);
+
+	static {
+		for (int i = 0; i < SLOTS; i++)
+			slots.set(i, Native.malloc(SIZE));
+	}
+
+	private TransferBlocks() {
+		throw new UnsupportedOperationException();
+	}
+
+	static long take() {
+		// the thread only picks where to start looking, so readers spread over the slots
+		int start = (int) Thread.currentThread().getId();
+		for (int i = 0; i < SLOTS; i++) {
+			int slot = (start + i) & (SLOTS - 1);
+			long block = slots.get(slot);
+			if (block != 0 && slots.compareAndSet(slot, block, 0))
+				return block;
+		}
+		return Native.malloc(SIZE);
+	}
+
+	static void give(long block) {
+		int start = (int) Thread.currentThread().getId();
+		for (int i = 0; i < SLOTS; i++) {
+			int slot = (start + i) & (SLOTS - 1);
+			if (slots.get(slot) == 0 && slots.compareAndSet(slot, 0, block))
+				return;
+		}
+		Native.free(block);
+	}
+
+}
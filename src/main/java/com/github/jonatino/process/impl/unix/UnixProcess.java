@@ -18,105 +18,161 @@ package com.github.jonatino.process.impl.unix;
 
 import com.github.jonatino.misc.Cacheable;
 import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.misc.Unsafes;
 import com.github.jonatino.natives.unix.unix;
 import com.github.jonatino.process.AbstractProcess;
 import com.github.jonatino.process.Module;
 import com.github.jonatino.process.Process;
+import com.github.jonatino.process.ReadBatch;
+import com.github.jonatino.process.RegionTable;
+import com.github.jonatino.process.WriteBatch;
+import com.sun.jna.Native;
 import com.sun.jna.Pointer;
-
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import sun.misc.Unsafe;
 
 /**
  * Created by Jonathan on 1/10/2016.
+ * <p>
+ * Calls process_vm_readv/writev through the raw-pointer overloads of {@link unix}: a call lays out a local and a
+ * remote struct iovec by hand in a small block of native memory taken from a pool shared by all threads, so it is
+ * two stores per iovec and a direct JNA call, with no {@link com.sun.jna.Structure} to write through reflection.
+ * Typed reads land in a value slot of the same block.
  */
 public final class UnixProcess extends AbstractProcess {
 
-	private ThreadLocal<unix.iovec> local = ThreadLocal.withInitial(() -> new unix.iovec());
-	private ThreadLocal<unix.iovec> remote = ThreadLocal.withInitial(() -> new unix.iovec());
+	private static final Unsafe unsafe = Unsafes.UNSAFE;
+
+	private final ProcMaps maps;
 
 	public UnixProcess(int id) {
 		super(id);
+		this.maps = new ProcMaps(id);
 	}
 
 	@Override
 	public void initModules() {
-		try {
-			for (String line : Files.readAllLines(Paths.get("/proc/" + id() + "/maps"))) {
-				String[] split = line.split(" ");
-				String[] regionSplit = split[0].split("-");
-
-				long start = -1, end = -1, offset = -1;
-				try {
-					start = Long.parseLong(regionSplit[0], 16);
-					end = Long.parseLong(regionSplit[1], 16);
-					offset = Long.parseLong(split[2], 16);
-				} catch (NumberFormatException ex) {
-					continue;
-				}
+		modules = maps.modules(this, modules);
+	}
 
-				if (offset < 0 || start <= 0 || end <= 0) {
-					continue;
-				}
+	@Override
+	protected void initModules(RegionTable table) {
+		modules = maps.modules(this, table, modules);
+	}
 
-				String path = "";
-				for (int i = 5; i < split.length; i++) {
-					String s = split[i].trim();
-					if (!s.isEmpty()) {
-						path += split[i];
-					}
-					if (s.isEmpty() && ++i > split.length) {
-						break;
-					} else if (s.isEmpty() && !split[i].trim().isEmpty()) {
-						path += split[i];
-					}
-				}
+	@Override
+	public boolean hasRegions() {
+		return true;
+	}
 
-				String modulename = path.substring(path.lastIndexOf("/") + 1, path.length());
-				// TODO: Fix for linux
-				if (split[1].charAt(2) == 'x')
-					modules.put(modulename, new Module(this, modulename, Pointer.createConstant(start), end - start, split[1]));
-			}
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+	@Override
+	public RegionTable regions() {
+		return maps.regions();
 	}
 
 	@Override
 	public MemoryBuffer read(long address, int size) {
 		MemoryBuffer buffer = Cacheable.buffer(size);
-		local.get().iov_base = buffer;
-		remote.get().iov_base = Cacheable.pointer(address);
-		remote.get().iov_len = local.get().iov_len = size;
-		if (unix.process_vm_readv(id(), local.get(), 1, remote.get(), 1, 0) != size) {
-			throw new RuntimeException("Read memory failed at address " + address + " size " + size);
-		}
-
+		read(address, size, Pointer.nativeValue(buffer));
 		return buffer;
 	}
 
 	@Override
 	public void read(long address, int size, long target) {
-		local.get().iov_base = Cacheable.pointer(target);
-		remote.get().iov_base = Cacheable.pointer(address);
-		remote.get().iov_len = local.get().iov_len = size;
-		if (unix.process_vm_readv(id(), local.get(), 1, remote.get(), 1, 0) != size) {
+		if (transfer(false, target, address, size) != size) {
 			throw new RuntimeException("Read memory failed at address " + address + " size " + size);
 		}
 	}
 
 	@Override
-	public Process write(Pointer address, MemoryBuffer buffer) throws com.sun.jna.LastErrorException {
-		local.get().iov_base = buffer;
-		remote.get().iov_base = address;
-		remote.get().iov_len = local.get().iov_len = buffer.size();
-		if (unix.process_vm_writev(id(), local.get(), 1, remote.get(), 1, 0) != buffer.size()) {
+	public boolean readBoolean(long address) {
+		return value(address, 1) != 0;
+	}
+
+	@Override
+	public int readByte(long address) {
+		return (int) value(address, 1);
+	}
+
+	@Override
+	public int readShort(long address) {
+		return (int) value(address, 2);
+	}
+
+	@Override
+	public int readInt(long address) {
+		return (int) value(address, 4);
+	}
+
+	@Override
+	public long readUnsignedInt(long address) {
+		return Integer.toUnsignedLong((int) value(address, 4));
+	}
+
+	@Override
+	public long readLong(long address) {
+		return value(address, 8);
+	}
+
+	@Override
+	public float readFloat(long address) {
+		return Float.intBitsToFloat((int) value(address, 4));
+	}
+
+	@Override
+	public double readDouble(long address) {
+		return Double.longBitsToDouble(value(address, 8));
+	}
+
+	@Override
+	public long readPointer(long address) {
+		return value(address, 8);
+	}
+
+	@Override
+	public ReadBatch read(ReadBatch batch) {
+		batch.reset();
+		for (int chunk = 0; chunk < batch.chunks(); chunk++) {
+			int to = batch.chunkEnd(chunk);
+			for (int from = batch.chunkStart(chunk); from < to; ) {
+				long count = to - from;
+				long read = unix.process_vm_readv(id(), batch.localIovec(from), count, batch.remoteIovec(from), count, 0);
+				if (read < 0 && Native.getLastError() != unix.EFAULT) {
+					batch.fail(Native.getLastError());
+					return batch;
+				}
+				// process_vm_readv stops at the first bad entry, skip it and carry on with the rest
+				from = batch.settle(from, to, read) + 1;
+			}
+		}
+		return batch;
+	}
+
+	@Override
+	public Process write(Pointer address, MemoryBuffer buffer) {
+		if (transfer(true, Pointer.nativeValue(buffer), Pointer.nativeValue(address), buffer.size()) != buffer.size()) {
 			throw new RuntimeException("Write memory failed at address " + Pointer.nativeValue(address) + " size " + buffer.size());
 		}
 		return this;
 	}
 
+	@Override
+	public WriteBatch write(WriteBatch batch) {
+		batch.reset();
+		for (int chunk = 0; chunk < batch.chunks(); chunk++) {
+			int to = batch.chunkEnd(chunk);
+			for (int from = batch.chunkStart(chunk); from < to; ) {
+				long count = to - from;
+				long written = unix.process_vm_writev(id(), batch.localIovec(from), count, batch.remoteIovec(from), count, 0);
+				if (written < 0 && Native.getLastError() != unix.EFAULT) {
+					batch.fail(Native.getLastError());
+					return batch;
+				}
+				from = batch.settle(from, to, written) + 1;
+			}
+		}
+		return batch;
+	}
+
 	@Override
 	public boolean canRead(Pointer address, int size) {
 		try {
@@ -127,4 +183,48 @@ public final class UnixProcess extends AbstractProcess {
 		}
 	}
 
-}
\ No newline at end of file
+	/*
+	 * Reads the `size` byte value at `address` through the value slot of a transfer block, sign extended.
+	 */
+	private long value(long address, int size) {
+		long block = TransferBlocks.take();
+		try {
+			long value = block + TransferBlocks.VALUE;
+			if (transfer(block, false, value, address, size) != size) {
+				throw new RuntimeException("Read memory failed at address " + address + " size " + size);
+			}
+			switch (size) {
+				case 1:
+					return unsafe.getByte(value);
+				case 2:
+					return unsafe.getShort(value);
+				case 4:
+					return unsafe.getInt(value);
+				default:
+					return unsafe.getLong(value);
+			}
+		} finally {
+			TransferBlocks.give(block);
+		}
+	}
+
+	private long transfer(boolean write, long local, long remote, long size) {
+		long block = TransferBlocks.take();
+		try {
+			return transfer(block, write, local, remote, size);
+		} finally {
+			TransferBlocks.give(block);
+		}
+	}
+
+	private long transfer(long block, boolean write, long local, long remote, long size) {
+		long localIov = block + TransferBlocks.LOCAL, remoteIov = block + TransferBlocks.REMOTE;
+		unsafe.putLong(localIov, local);
+		unsafe.putLong(localIov + 8, size);
+		unsafe.putLong(remoteIov, remote);
+		unsafe.putLong(remoteIov + 8, size);
+		return write ? unix.process_vm_writev(id(), localIov, 1, remoteIov, 1, 0)
+				: unix.process_vm_readv(id(), localIov, 1, remoteIov, 1, 0);
+	}
+
+}
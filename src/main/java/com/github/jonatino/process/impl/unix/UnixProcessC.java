@@ -18,82 +18,43 @@ package com.github.jonatino.process.impl.unix;
 
 import com.github.jonatino.misc.Cacheable;
 import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.misc.Utils;
 import com.github.jonatino.natives.unix.unixc;
 import com.github.jonatino.process.AbstractProcess;
 import com.github.jonatino.process.Module;
 import com.github.jonatino.process.Process;
+import com.github.jonatino.process.ReadBatch;
+import com.github.jonatino.process.RegionTable;
+import com.github.jonatino.process.WriteBatch;
 import com.sun.jna.Pointer;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-
 public final class UnixProcessC extends AbstractProcess {
 
+	private final ProcMaps maps;
+
 	public UnixProcessC(int id) {
 		super(id);
+		this.maps = new ProcMaps(id);
 	}
 
 	@Override
 	public void initModules() {
-		try {
-			String prevmodulename = "";
-			for (String line : Files.readAllLines(Paths.get("/proc/" + id() + "/maps"))) {
-				String[] split = line.split(" ");
-				String[] regionSplit = split[0].split("-");
-
-				long start = -1, end = -1, offset = -1;
-				try {
-					start = Long.parseLong(regionSplit[0], 16);
-					end = Long.parseLong(regionSplit[1], 16);
-					offset = Long.parseLong(split[2], 16);
-				} catch (NumberFormatException ex) {
-					continue;
-				}
-
-				if (offset < 0 || start <= 0 || end <= 0) {
-					continue;
-				}
-
-				String path = "";
-				for (int i = 5; i < split.length; i++) {
-					String s = split[i].trim();
-					if (!s.isEmpty()) {
-						path += split[i];
-					}
-					if (s.isEmpty() && ++i > split.length) {
-						break;
-					} else if (s.isEmpty() && !split[i].trim().isEmpty()) {
-						path += split[i];
-					}
-				}
-
-				String modulename = path.substring(path.lastIndexOf("/") + 1, path.length());
-				// TODO: Fix for linux
-				if (split[1].charAt(2) != 'x')
-					continue;
-				if (split[1].charAt(0) != 'r')
-					continue;
-				if (modulename == "" && prevmodulename != "") {
-					long mstart = modules.get(prevmodulename).start();
-					// modules.put(prevmodulename, new Module(this, prevmodulename, Pointer.createConstant(mstart), end - mstart, split[1]));
-					System.out.println("> Wanna Extended " + prevmodulename + " @ " + Module.hex(start) + " - " + Module.hex(end) + " / " + split[1]);
-				} else {
-					if (modules.containsKey(modulename)) {
-						long mstart = modules.get(modulename).start();
-						modules.put(modulename, new Module(this, modulename, Pointer.createConstant(mstart), end - mstart, split[1]));
-						//System.out.println("> Updated " + modulename + " @ " + Module.hex(start) + " - " + Module.hex(end) + " / " + split[1]);
-					} else {
-						modules.put(modulename, new Module(this, modulename, Pointer.createConstant(start), end - start, split[1]));
-						//System.out.println("Found " + modulename + " @ " + Module.hex(start) + " - " + Module.hex(end) + " / " + split[1]);
-					}
-				}
-				if (modulename != "")
-					prevmodulename = modulename;
-			}
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		modules = maps.modules(this, modules);
+	}
+
+	@Override
+	protected void initModules(RegionTable table) {
+		modules = maps.modules(this, table, modules);
+	}
+
+	@Override
+	public boolean hasRegions() {
+		return true;
+	}
+
+	@Override
+	public RegionTable regions() {
+		return maps.regions();
 	}
 
 	@Override
@@ -112,6 +73,50 @@ public final class UnixProcessC extends AbstractProcess {
 		}
 	}
 
+	@Override
+	public byte[] readBytes(long address, byte[] dst, int off, int len) {
+		readArray(address, dst, off, Utils.arrayBytes(dst.length, off, len, 1));
+		return dst;
+	}
+
+	@Override
+	public int[] readInts(long address, int[] dst, int off, int len) {
+		readArray(address, dst, (long) off << 2, Utils.arrayBytes(dst.length, off, len, 4));
+		return dst;
+	}
+
+	@Override
+	public long[] readLongs(long address, long[] dst, int off, int len) {
+		readArray(address, dst, (long) off << 3, Utils.arrayBytes(dst.length, off, len, 8));
+		return dst;
+	}
+
+	@Override
+	public float[] readFloats(long address, float[] dst, int off, int len) {
+		readArray(address, dst, (long) off << 2, Utils.arrayBytes(dst.length, off, len, 4));
+		return dst;
+	}
+
+	@Override
+	public double[] readDoubles(long address, double[] dst, int off, int len) {
+		readArray(address, dst, (long) off << 3, Utils.arrayBytes(dst.length, off, len, 8));
+		return dst;
+	}
+
+	@Override
+	public ReadBatch read(ReadBatch batch) {
+		batch.reset();
+		if (batch.count() > 0) {
+			// skips past unreadable entries natively, so the whole batch is one JNI call
+			long transferred = unixc.mem_readv(id(), batch.descriptors(), batch.count());
+			if (transferred < 0)
+				batch.fail((int) -transferred);
+			else
+				batch.settleDescriptors();
+		}
+		return batch;
+	}
+
 	@Override
 	public Process write(Pointer address, MemoryBuffer buffer) throws com.sun.jna.LastErrorException {
 		if (unixc.mem_write(id(), Pointer.nativeValue(buffer), Pointer.nativeValue(address), buffer.size()) != buffer.size()) {
@@ -120,6 +125,19 @@ public final class UnixProcessC extends AbstractProcess {
 		return this;
 	}
 
+	@Override
+	public WriteBatch write(WriteBatch batch) {
+		batch.reset();
+		if (batch.count() > 0) {
+			long transferred = unixc.mem_writev(id(), batch.descriptors(), batch.count());
+			if (transferred < 0)
+				batch.fail((int) -transferred);
+			else
+				batch.settleDescriptors();
+		}
+		return batch;
+	}
+
 	@Override
 	public boolean canRead(Pointer address, int size) {
 		try {
@@ -130,4 +148,10 @@ public final class UnixProcessC extends AbstractProcess {
 		}
 	}
 
-}
\ No newline at end of file
+	private void readArray(long address, Object array, long offset, int size) {
+		if (size > 0 && unixc.mem_read_array(id(), address, array, offset, size) != size) {
+			throw new RuntimeException("Read memory failed at address " + Module.hex(address) + " size " + size);
+		}
+	}
+
+}
@@ -0,0 +1,212 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process.impl.unix;
+
+import com.github.jonatino.misc.Cacheable;
+import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.process.AbstractProcess;
+import com.github.jonatino.process.Module;
+import com.github.jonatino.process.Process;
+import com.github.jonatino.process.ReadBatch;
+import com.github.jonatino.process.RegionTable;
+import com.github.jonatino.process.WriteBatch;
+import com.sun.jna.Pointer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Linux backend that opens /proc/&lt;pid&gt;/mem once and serves every read and write with a positional
+ * {@link FileChannel} call on a direct ByteBuffer view of the native memory, made through JNA. Needs no
+ * libnative_mem.so, and a large read such as {@link Module#data()} is a single pread.
+ * <p>
+ * The channel is shared by every thread. An interrupt during a read closes it, so the interrupted read fails and
+ * the channel is opened again for everyone else. {@link #close()} releases it for good.
+ */
+public final class UnixProcessMem extends AbstractProcess {
+
+	private final Path path;
+	private final boolean writable;
+	private final ProcMaps maps;
+
+	private volatile FileChannel mem;
+	private volatile boolean closed;
+
+	public UnixProcessMem(int id) {
+		super(id);
+		this.path = Paths.get("/proc/" + id + "/mem");
+		FileChannel mem;
+		boolean writable = true;
+		try {
+			mem = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} catch (IOException | SecurityException e) {
+			try {
+				mem = FileChannel.open(path, StandardOpenOption.READ);
+				writable = false;
+			} catch (IOException ex) {
+				throw new RuntimeException("Failed to open " + path, ex);
+			}
+		}
+		this.mem = mem;
+		this.writable = writable;
+		this.maps = new ProcMaps(id);
+	}
+
+	@Override
+	public void initModules() {
+		modules = maps.modules(this, modules);
+	}
+
+	@Override
+	protected void initModules(RegionTable table) {
+		modules = maps.modules(this, table, modules);
+	}
+
+	@Override
+	public boolean hasRegions() {
+		return true;
+	}
+
+	@Override
+	public RegionTable regions() {
+		return maps.regions();
+	}
+
+	@Override
+	public MemoryBuffer read(long address, int size) {
+		MemoryBuffer buffer = Cacheable.buffer(size);
+		read(address, size, Pointer.nativeValue(buffer));
+		return buffer;
+	}
+
+	@Override
+	public void read(long address, int size, long target) {
+		if (pread(address, size, target) != size) {
+			throw new RuntimeException("Read memory failed at address " + Module.hex(address) + " size " + size);
+		}
+	}
+
+	@Override
+	public ReadBatch read(ReadBatch batch) {
+		for (int i = 0; i < batch.count(); i++) {
+			batch.mark(i, pread(batch.address(i), batch.length(i), batch.target(i)) == batch.length(i));
+		}
+		return batch;
+	}
+
+	@Override
+	public Process write(Pointer address, MemoryBuffer buffer) {
+		if (pwrite(Pointer.nativeValue(address), buffer.size(), Pointer.nativeValue(buffer)) != buffer.size()) {
+			throw new RuntimeException("Write memory failed at address " + Module.hex(Pointer.nativeValue(address)) + " size " + buffer.size());
+		}
+		return this;
+	}
+
+	@Override
+	public WriteBatch write(WriteBatch batch) {
+		for (int i = 0; i < batch.count(); i++) {
+			batch.mark(i, pwrite(batch.address(i), batch.length(i), batch.local(i)) == batch.length(i));
+		}
+		return batch;
+	}
+
+	@Override
+	public boolean canRead(Pointer address, int size) {
+		try {
+			read(address, size);
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			mem.close();
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to close " + path, e);
+		}
+	}
+
+	private int pread(long address, int size, long target) {
+		return transfer(address, size, target, false);
+	}
+
+	private int pwrite(long address, int size, long source) {
+		return transfer(address, size, source, true);
+	}
+
+	/*
+	 * Returns the number of bytes transferred, which is short of `size` when a page in the range isn't mapped or
+	 * the process is gone. Only an interrupt of the calling thread, or use after close(), is thrown.
+	 */
+	private int transfer(long address, int size, long local, boolean write) {
+		if (size == 0)
+			return 0;
+		// a view of the native memory, which allocates nothing native
+		ByteBuffer buffer = new Pointer(local).getByteBuffer(0, size);
+		while (true) {
+			FileChannel mem = this.mem;
+			try {
+				while (buffer.hasRemaining()) {
+					int done = write ? mem.write(buffer, address + buffer.position()) : mem.read(buffer, address + buffer.position());
+					if (done <= 0)
+						break;
+				}
+				return buffer.position();
+			} catch (ClosedByInterruptException e) {
+				reopen(mem);
+				throw new RuntimeException((write ? "Write" : "Read") + " memory interrupted at address " + Module.hex(address) + " size " + size, e);
+			} catch (ClosedChannelException e) {
+				// closed by an interrupt on another thread
+				reopen(mem);
+			} catch (IOException e) {
+				// the kernel fails the call at the first page it can't transfer, so what was done so far is the result
+				return buffer.position();
+			} catch (IllegalArgumentException e) {
+				// a negative position, i.e. a kernel address
+				return buffer.position();
+			}
+		}
+	}
+
+	/*
+	 * Opens the file again unless another thread already did, or the process was closed.
+	 */
+	private synchronized void reopen(FileChannel stale) {
+		if (closed)
+			throw new IllegalStateException("Process " + id() + " is closed");
+		if (mem != stale)
+			return;
+		try {
+			mem = writable ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE) : FileChannel.open(path, StandardOpenOption.READ);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to reopen " + path, e);
+		}
+	}
+
+}
@@ -81,7 +81,7 @@ public final class Win32Process extends AbstractProcess {
 
 	@Override
 	public void read(long address, int size, long target) {
-		if (Kernel32.ReadProcessMemory(pointer(), Cacheable.pointer(address), Cacheable.pointer(target), size, 0) == 0) {
+		if (Kernel32.ReadProcessMemory(pointer(), address, target, size, 0) == 0) {
 			throw new Win32Exception(Native.getLastError());
 		}
 	}
@@ -0,0 +1,108 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process.jfr;
+
+import com.github.jonatino.process.DataSource;
+import com.github.jonatino.process.Module;
+import com.github.jonatino.process.Process;
+
+/**
+ * Switches the Java Flight Recorder events of this library on and off. Recording them is opt-in: reads, writes
+ * and module enumeration are recorded by wrapping a process in a {@link FlightRecordedProcess}, and scans once
+ * {@link #enable()} was called, which wrapping a process does too, or with {@code -Djmm.jfr=true}.
+ * <p>
+ * The events need the {@code jdk.jfr} API of JDK 8u262 or later; on older runtimes nothing is recorded and the
+ * event classes are never loaded.
+ */
+public final class Flight {
+
+	private static final boolean AVAILABLE = probe();
+
+	private static volatile boolean enabled = AVAILABLE && Boolean.getBoolean("jmm.jfr");
+
+	private Flight() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Whether this runtime has the Flight Recorder API.
+	 */
+	public static boolean available() {
+		return AVAILABLE;
+	}
+
+	public static boolean enabled() {
+		return enabled;
+	}
+
+	public static void enable() {
+		if (!AVAILABLE) {
+			throw new UnsupportedOperationException("Flight Recorder events need JDK 8u262 or later");
+		}
+		enabled = true;
+	}
+
+	public static void disable() {
+		enabled = false;
+	}
+
+	/**
+	 * Starts timing a scan. The result is only meant for {@link #endScan}, and is null when scans aren't recorded.
+	 */
+	public static Object beginScan() {
+		if (!enabled)
+			return null;
+		ScanEvent event = new ScanEvent();
+		if (!event.isEnabled())
+			return null;
+		event.begin();
+		return event;
+	}
+
+	public static void endScan(Object scan, String kind, DataSource source, long start, long size, long matches) {
+		if (scan == null)
+			return;
+		ScanEvent event = (ScanEvent) scan;
+		event.end();
+		if (event.shouldCommit()) {
+			Process process = source instanceof Module ? ((Module) source).process() : source instanceof Process ? (Process) source : null;
+			event.pid = process != null ? process.id() : -1;
+			event.backend = backend(process != null ? process : source);
+			event.kind = kind;
+			event.start = start;
+			event.size = size;
+			event.matches = matches;
+			event.commit();
+		}
+	}
+
+	static String backend(Object source) {
+		if (source instanceof FlightRecordedProcess)
+			source = ((FlightRecordedProcess) source).process();
+		return source.getClass().getSimpleName();
+	}
+
+	private static boolean probe() {
+		try {
+			Class.forName("jdk.jfr.Event", false, Flight.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+}
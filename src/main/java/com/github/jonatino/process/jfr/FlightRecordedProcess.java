@@ -0,0 +1,369 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process.jfr;
+
+import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.misc.Strings;
+import com.github.jonatino.process.ForwardingProcess;
+import com.github.jonatino.process.Process;
+import com.github.jonatino.process.ReadBatch;
+import com.github.jonatino.process.RegionIndex;
+import com.github.jonatino.process.VectoredBatch;
+import com.github.jonatino.process.WriteBatch;
+import com.sun.jna.Pointer;
+
+/**
+ * Wraps a {@link Process} and emits a Flight Recorder event for every bulk read, batch, write and module
+ * enumeration, carrying the pid, address, size and backend, so that stalls reading the target can be lined up
+ * with GC and thread activity in the same recording. Typed reads are only recorded when they take longer than
+ * the threshold of {@code com.github.jonatino.TypedRead}, 20 us unless the recording settings say otherwise.
+ * <p>
+ * When nothing is recording, an event costs a check of a flag and, thanks to escape analysis, no allocation.
+ * Modules handed out by this process read through it, so their reads are recorded as well.
+ */
+public final class FlightRecordedProcess extends ForwardingProcess {
+
+	private final int pid;
+	private final String backend;
+
+	public FlightRecordedProcess(Process process) {
+		super(process);
+		Flight.enable();
+		this.pid = process.id();
+		this.backend = process.getClass().getSimpleName();
+	}
+
+	@Override
+	public void initModules() {
+		ModulesEvent event = new ModulesEvent();
+		event.begin();
+		try {
+			super.initModules();
+			event.succeeded = true;
+		} finally {
+			event.end();
+			if (event.shouldCommit()) {
+				event.pid = pid;
+				event.backend = backend;
+				RegionIndex index = event.succeeded ? index() : null;
+				event.modules = index != null ? index.moduleCount() : 0;
+				event.commit();
+			}
+		}
+	}
+
+	@Override
+	public MemoryBuffer read(long address, int size) {
+		ReadEvent event = new ReadEvent();
+		event.begin();
+		try {
+			MemoryBuffer buffer = process.read(address, size);
+			event.succeeded = true;
+			return buffer;
+		} finally {
+			commit(event, address, size);
+		}
+	}
+
+	@Override
+	public void read(long address, int size, long target) {
+		ReadEvent event = new ReadEvent();
+		event.begin();
+		try {
+			process.read(address, size, target);
+			event.succeeded = true;
+		} finally {
+			commit(event, address, size);
+		}
+	}
+
+	@Override
+	public String readString(long address, int length, Strings.Encoding encoding) {
+		ReadEvent event = new ReadEvent();
+		event.begin();
+		try {
+			String string = process.readString(address, length, encoding);
+			event.succeeded = true;
+			return string;
+		} finally {
+			commit(event, address, length);
+		}
+	}
+
+	@Override
+	protected void write(long at, Pointer address, MemoryBuffer buffer) {
+		WriteEvent event = new WriteEvent();
+		event.begin();
+		try {
+			process.write(address, buffer);
+			event.succeeded = true;
+		} finally {
+			event.end();
+			if (event.shouldCommit()) {
+				event.pid = pid;
+				event.backend = backend;
+				event.address = at;
+				event.size = buffer.size();
+				event.commit();
+			}
+		}
+	}
+
+	@Override
+	public ReadBatch read(ReadBatch batch) {
+		BatchReadEvent event = new BatchReadEvent();
+		event.begin();
+		try {
+			return process.read(batch);
+		} finally {
+			commit(event, batch);
+		}
+	}
+
+	@Override
+	public WriteBatch write(WriteBatch batch) {
+		BatchWriteEvent event = new BatchWriteEvent();
+		event.begin();
+		try {
+			return process.write(batch);
+		} finally {
+			commit(event, batch);
+		}
+	}
+
+	@Override
+	public boolean readBoolean(long address) {
+		TypedReadEvent event = new TypedReadEvent();
+		event.begin();
+		try {
+			boolean value = process.readBoolean(address);
+			event.succeeded = true;
+			return value;
+		} finally {
+			commit(event, address, 1);
+		}
+	}
+
+	@Override
+	public int readByte(long address) {
+		TypedReadEvent event = new TypedReadEvent();
+		event.begin();
+		try {
+			int value = process.readByte(address);
+			event.succeeded = true;
+			return value;
+		} finally {
+			commit(event, address, 1);
+		}
+	}
+
+	@Override
+	public int readShort(long address) {
+		TypedReadEvent event = new TypedReadEvent();
+		event.begin();
+		try {
+			int value = process.readShort(address);
+			event.succeeded = true;
+			return value;
+		} finally {
+			commit(event, address, 2);
+		}
+	}
+
+	@Override
+	public int readInt(long address) {
+		TypedReadEvent event = new TypedReadEvent();
+		event.begin();
+		try {
+			int value = process.readInt(address);
+			event.succeeded = true;
+			return value;
+		} finally {
+			commit(event, address, 4);
+		}
+	}
+
+	@Override
+	public long readUnsignedInt(long address) {
+		TypedReadEvent event = new TypedReadEvent();
+		event.begin();
+		try {
+			long value = process.readUnsignedInt(address);
+			event.succeeded = true;
+			return value;
+		} finally {
+			commit(event, address, 4);
+		}
+	}
+
+	@Override
+	public long readLong(long address) {
+		TypedReadEvent event = new TypedReadEvent();
+		event.begin();
+		try {
+			long value = process.readLong(address);
+			event.succeeded = true;
+			return value;
+		} finally {
+			commit(event, address, 8);
+		}
+	}
+
+	@Override
+	public float readFloat(long address) {
+		TypedReadEvent event = new TypedReadEvent();
+		event.begin();
+		try {
+			float value = process.readFloat(address);
+			event.succeeded = true;
+			return value;
+		} finally {
+			commit(event, address, 4);
+		}
+	}
+
+	@Override
+	public double readDouble(long address) {
+		TypedReadEvent event = new TypedReadEvent();
+		event.begin();
+		try {
+			double value = process.readDouble(address);
+			event.succeeded = true;
+			return value;
+		} finally {
+			commit(event, address, 8);
+		}
+	}
+
+	@Override
+	public long readPointer(long address) {
+		TypedReadEvent event = new TypedReadEvent();
+		event.begin();
+		try {
+			long value = process.readPointer(address);
+			event.succeeded = true;
+			return value;
+		} finally {
+			commit(event, address, 8);
+		}
+	}
+
+	@Override
+	public byte[] readBytes(long address, byte[] dst, int off, int len) {
+		ReadEvent event = new ReadEvent();
+		event.begin();
+		try {
+			process.readBytes(address, dst, off, len);
+			event.succeeded = true;
+			return dst;
+		} finally {
+			commit(event, address, len);
+		}
+	}
+
+	@Override
+	public int[] readInts(long address, int[] dst, int off, int len) {
+		ReadEvent event = new ReadEvent();
+		event.begin();
+		try {
+			process.readInts(address, dst, off, len);
+			event.succeeded = true;
+			return dst;
+		} finally {
+			commit(event, address, len * 4);
+		}
+	}
+
+	@Override
+	public long[] readLongs(long address, long[] dst, int off, int len) {
+		ReadEvent event = new ReadEvent();
+		event.begin();
+		try {
+			process.readLongs(address, dst, off, len);
+			event.succeeded = true;
+			return dst;
+		} finally {
+			commit(event, address, len * 8);
+		}
+	}
+
+	@Override
+	public float[] readFloats(long address, float[] dst, int off, int len) {
+		ReadEvent event = new ReadEvent();
+		event.begin();
+		try {
+			process.readFloats(address, dst, off, len);
+			event.succeeded = true;
+			return dst;
+		} finally {
+			commit(event, address, len * 4);
+		}
+	}
+
+	@Override
+	public double[] readDoubles(long address, double[] dst, int off, int len) {
+		ReadEvent event = new ReadEvent();
+		event.begin();
+		try {
+			process.readDoubles(address, dst, off, len);
+			event.succeeded = true;
+			return dst;
+		} finally {
+			commit(event, address, len * 8);
+		}
+	}
+
+	private void commit(ReadEvent event, long address, int size) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.pid = pid;
+			event.backend = backend;
+			event.address = address;
+			event.size = size;
+			event.commit();
+		}
+	}
+
+	private void commit(TypedReadEvent event, long address, int size) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.pid = pid;
+			event.backend = backend;
+			event.address = address;
+			event.size = size;
+			event.commit();
+		}
+	}
+
+	private void commit(BatchEvent event, VectoredBatch batch) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.pid = pid;
+			event.backend = backend;
+			event.entries = batch.count();
+			event.address = batch.count() > 0 ? batch.address(0) : 0;
+			for (int i = 0; i < batch.count(); i++) {
+				if (batch.succeeded(i))
+					event.size += batch.length(i);
+				else
+					event.failed++;
+			}
+			event.commit();
+		}
+	}
+
+}
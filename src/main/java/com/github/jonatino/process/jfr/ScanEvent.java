@@ -0,0 +1,44 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.MemoryAddress;
+import jdk.jfr.Name;
+
+@Name("com.github.jonatino.Scan")
+@Label("Memory Scan")
+@Description("A signature or value scan over target memory")
+final class ScanEvent extends MemoryEvent {
+
+	@Label("Kind")
+	String kind;
+
+	@Label("Start")
+	@MemoryAddress
+	long start;
+
+	@Label("Size")
+	@DataAmount
+	long size;
+
+	@Label("Matches")
+	long matches;
+
+}
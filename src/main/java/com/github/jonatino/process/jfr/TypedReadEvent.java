@@ -0,0 +1,46 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.MemoryAddress;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Typed reads are far too frequent to record them all, so only slow ones are by default.
+ */
+@Name("com.github.jonatino.TypedRead")
+@Label("Remote Typed Read")
+@Description("A read of a single value of target memory that took longer than the threshold")
+@Threshold("20 us")
+final class TypedReadEvent extends MemoryEvent {
+
+	@Label("Address")
+	@MemoryAddress
+	long address;
+
+	@Label("Size")
+	@DataAmount
+	long size;
+
+	@Label("Succeeded")
+	boolean succeeded;
+
+}
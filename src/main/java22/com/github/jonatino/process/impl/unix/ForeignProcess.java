@@ -0,0 +1,322 @@
+/*
+ *    Copyright 2016 Jonathan Beaudoin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.jonatino.process.impl.unix;
+
+import com.github.jonatino.misc.Cacheable;
+import com.github.jonatino.misc.MemoryBuffer;
+import com.github.jonatino.natives.unix.unix;
+import com.github.jonatino.process.AbstractProcess;
+import com.github.jonatino.process.Module;
+import com.github.jonatino.process.Process;
+import com.github.jonatino.process.ReadBatch;
+import com.github.jonatino.process.RegionTable;
+import com.github.jonatino.process.WriteBatch;
+import com.sun.jna.Pointer;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+
+/**
+ * Reads and writes through process_vm_readv/writev called with {@code java.lang.foreign} downcall handles, so
+ * neither JNA nor libnative_mem.so sits between a read and the system call. A call takes a preallocated block
+ * holding one local and one remote iovec plus room for a single value from a pool shared by all threads, so typed
+ * reads touch no other memory.
+ * <p>
+ * Array reads stay on the default path through a scratch buffer. A heap segment can only reach native code as an
+ * argument of a critical downcall, and process_vm_readv takes the local buffer inside an iovec, which has to hold
+ * a native address.
+ * <p>
+ * Only in the JDK 22 part of the multi-release jar; {@link com.github.jonatino.process.Processes#byId(int)} picks
+ * it up on Linux when it's there. Run with {@code --enable-native-access=ALL-UNNAMED} to silence the warning about
+ * restricted methods.
+ */
+public final class ForeignProcess extends AbstractProcess {
+
+	private static final MethodHandle READV;
+	private static final MethodHandle WRITEV;
+	// the same calls capturing errno, for the batch paths, which tell a bad entry from a process that is gone
+	private static final MethodHandle READV_ERRNO;
+	private static final MethodHandle WRITEV_ERRNO;
+	private static final StructLayout CALL_STATE = Linker.Option.captureStateLayout();
+	private static final long ERRNO = CALL_STATE.byteOffset(MemoryLayout.PathElement.groupElement("errno"));
+
+	static {
+		Linker linker = Linker.nativeLinker();
+		// ssize_t process_vm_readv(pid_t, const struct iovec *, unsigned long, const struct iovec *, unsigned long, unsigned long)
+		FunctionDescriptor descriptor = FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT, ValueLayout.ADDRESS,
+				ValueLayout.JAVA_LONG, ValueLayout.ADDRESS, ValueLayout.JAVA_LONG, ValueLayout.JAVA_LONG);
+		MemorySegment readv = linker.defaultLookup().find("process_vm_readv").get();
+		MemorySegment writev = linker.defaultLookup().find("process_vm_writev").get();
+		READV = linker.downcallHandle(readv, descriptor);
+		WRITEV = linker.downcallHandle(writev, descriptor);
+		Linker.Option errno = Linker.Option.captureCallState("errno");
+		READV_ERRNO = linker.downcallHandle(readv, descriptor, errno);
+		WRITEV_ERRNO = linker.downcallHandle(writev, descriptor, errno);
+	}
+
+	private final ProcMaps maps;
+
+	public ForeignProcess(int id) {
+		super(id);
+		this.maps = new ProcMaps(id);
+	}
+
+	/**
+	 * A view of {@code buffer} as a segment, sharing its memory.
+	 */
+	public static MemorySegment segment(MemoryBuffer buffer) {
+		return MemorySegment.ofAddress(Pointer.nativeValue(buffer)).reinterpret(buffer.size());
+	}
+
+	/**
+	 * A view of a native {@code segment} as a {@link MemoryBuffer}, sharing its memory. The buffer must not be
+	 * freed, and must not be used once the segment's arena is closed.
+	 */
+	public static MemoryBuffer buffer(MemorySegment segment) {
+		if (!segment.isNative() || segment.byteSize() > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Only native segments of up to 2 GB can be viewed as a MemoryBuffer: " + segment);
+		}
+		return new MemoryBuffer(segment.address(), (int) segment.byteSize());
+	}
+
+	@Override
+	public void initModules() {
+		modules = maps.modules(this, modules);
+	}
+
+	@Override
+	protected void initModules(RegionTable table) {
+		modules = maps.modules(this, table, modules);
+	}
+
+	@Override
+	public boolean hasRegions() {
+		return true;
+	}
+
+	@Override
+	public RegionTable regions() {
+		return maps.regions();
+	}
+
+	/**
+	 * Reads {@code size} bytes into the calling thread's scratch memory and returns a segment over them, valid
+	 * until the thread next reads a similar size, like {@link #read(long, int)}.
+	 */
+	public MemorySegment segment(long address, int size) {
+		return segment(read(address, size));
+	}
+
+	/**
+	 * Fills the native segment {@code target} with the memory at {@code address}.
+	 */
+	public MemorySegment read(long address, MemorySegment target) {
+		if (!target.isNative()) {
+			throw new IllegalArgumentException("Can only read into native segments: " + target);
+		}
+		if (transfer(READV, target.address(), address, target.byteSize()) != target.byteSize()) {
+			throw new RuntimeException("Read memory failed at address " + Module.hex(address) + " size " + target.byteSize());
+		}
+		return target;
+	}
+
+	/**
+	 * Writes all of the native segment {@code source} to {@code address}.
+	 */
+	public Process write(long address, MemorySegment source) {
+		if (!source.isNative()) {
+			throw new IllegalArgumentException("Can only write from native segments: " + source);
+		}
+		if (transfer(WRITEV, source.address(), address, source.byteSize()) != source.byteSize()) {
+			throw new RuntimeException("Write memory failed at address " + Module.hex(address) + " size " + source.byteSize());
+		}
+		return this;
+	}
+
+	@Override
+	public MemoryBuffer read(long address, int size) {
+		MemoryBuffer buffer = Cacheable.buffer(size);
+		read(address, size, Pointer.nativeValue(buffer));
+		return buffer;
+	}
+
+	@Override
+	public void read(long address, int size, long target) {
+		if (transfer(READV, target, address, size) != size) {
+			throw new RuntimeException("Read memory failed at address " + Module.hex(address) + " size " + size);
+		}
+	}
+
+	@Override
+	public int readByte(long address) {
+		return (int) value(address, 1);
+	}
+
+	@Override
+	public int readShort(long address) {
+		return (int) value(address, 2);
+	}
+
+	@Override
+	public int readInt(long address) {
+		return (int) value(address, 4);
+	}
+
+	@Override
+	public long readLong(long address) {
+		return value(address, 8);
+	}
+
+	@Override
+	public float readFloat(long address) {
+		return Float.intBitsToFloat((int) value(address, 4));
+	}
+
+	@Override
+	public double readDouble(long address) {
+		return Double.longBitsToDouble(value(address, 8));
+	}
+
+	@Override
+	public long readPointer(long address) {
+		return value(address, 8);
+	}
+
+	@Override
+	public ReadBatch read(ReadBatch batch) {
+		batch.reset();
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment state = arena.allocate(CALL_STATE);
+			for (int chunk = 0; chunk < batch.chunks(); chunk++) {
+				int to = batch.chunkEnd(chunk);
+				for (int from = batch.chunkStart(chunk); from < to; ) {
+					long count = to - from;
+					long read = vectored(READV_ERRNO, state, batch.localIovec(from), batch.remoteIovec(from), count);
+					if (read < 0 && state.get(ValueLayout.JAVA_INT, ERRNO) != unix.EFAULT) {
+						batch.fail(state.get(ValueLayout.JAVA_INT, ERRNO));
+						return batch;
+					}
+					// process_vm_readv stops at the first bad entry, skip it and carry on with the rest
+					from = batch.settle(from, to, read) + 1;
+				}
+			}
+		}
+		return batch;
+	}
+
+	@Override
+	public Process write(Pointer address, MemoryBuffer buffer) {
+		if (transfer(WRITEV, Pointer.nativeValue(buffer), Pointer.nativeValue(address), buffer.size()) != buffer.size()) {
+			throw new RuntimeException("Write memory failed at address " + Module.hex(Pointer.nativeValue(address)) + " size " + buffer.size());
+		}
+		return this;
+	}
+
+	@Override
+	public WriteBatch write(WriteBatch batch) {
+		batch.reset();
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment state = arena.allocate(CALL_STATE);
+			for (int chunk = 0; chunk < batch.chunks(); chunk++) {
+				int to = batch.chunkEnd(chunk);
+				for (int from = batch.chunkStart(chunk); from < to; ) {
+					long count = to - from;
+					long written = vectored(WRITEV_ERRNO, state, batch.localIovec(from), batch.remoteIovec(from), count);
+					if (written < 0 && state.get(ValueLayout.JAVA_INT, ERRNO) != unix.EFAULT) {
+						batch.fail(state.get(ValueLayout.JAVA_INT, ERRNO));
+						return batch;
+					}
+					from = batch.settle(from, to, written) + 1;
+				}
+			}
+		}
+		return batch;
+	}
+
+	@Override
+	public boolean canRead(Pointer address, int size) {
+		try {
+			read(address, size);
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	/*
+	 * Reads the `size` byte value at `address` through the value slot of a transfer block, sign extended.
+	 */
+	private long value(long address, int size) {
+		long block = TransferBlocks.take();
+		try {
+			MemorySegment value = MemorySegment.ofAddress(block + TransferBlocks.VALUE).reinterpret(8);
+			if (transfer(READV, block, value.address(), address, size) != size) {
+				throw new RuntimeException("Read memory failed at address " + Module.hex(address) + " size " + size);
+			}
+			switch (size) {
+				case 1:
+					return value.get(ValueLayout.JAVA_BYTE, 0);
+				case 2:
+					return value.get(ValueLayout.JAVA_SHORT, 0);
+				case 4:
+					return value.get(ValueLayout.JAVA_INT, 0);
+				default:
+					return value.get(ValueLayout.JAVA_LONG, 0);
+			}
+		} finally {
+			TransferBlocks.give(block);
+		}
+	}
+
+	private long transfer(MethodHandle handle, long local, long remote, long size) {
+		long block = TransferBlocks.take();
+		try {
+			return transfer(handle, block, local, remote, size);
+		} finally {
+			TransferBlocks.give(block);
+		}
+	}
+
+	private long transfer(MethodHandle handle, long block, long local, long remote, long size) {
+		MemorySegment localIov = MemorySegment.ofAddress(block + TransferBlocks.LOCAL).reinterpret(TransferBlocks.IOVEC_SIZE);
+		MemorySegment remoteIov = MemorySegment.ofAddress(block + TransferBlocks.REMOTE).reinterpret(TransferBlocks.IOVEC_SIZE);
+		localIov.set(ValueLayout.JAVA_LONG, 0, local);
+		localIov.set(ValueLayout.JAVA_LONG, 8, size);
+		remoteIov.set(ValueLayout.JAVA_LONG, 0, remote);
+		remoteIov.set(ValueLayout.JAVA_LONG, 8, size);
+		try {
+			return (long) handle.invokeExact(id(), localIov, 1L, remoteIov, 1L, 0L);
+		} catch (Throwable t) {
+			throw new RuntimeException(t);
+		}
+	}
+
+	private long vectored(MethodHandle handle, MemorySegment state, long local, long remote, long count) {
+		try {
+			return (long) handle.invokeExact(state, id(), MemorySegment.ofAddress(local), count, MemorySegment.ofAddress(remote), count, 0L);
+		} catch (Throwable t) {
+			throw new RuntimeException(t);
+		}
+	}
+
+}